@@ -0,0 +1,89 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Naming stage: the name of a literal with a cold and a warm cache, the name of a literal passed as an argument,
+ * the character mapping on its own and the name of a package holder class.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConstantNamingBenchmark
+{
+    private static final String[] PACKAGES = {"com.example.app", "org.apache.commons.lang", "net.sf.util", "auto", "a.b.c.d.e.f"};
+
+    private ConstantNameGenerator myUncached;
+    private ConstantNameGenerator myCached;
+    private int myPackageCursor;
+
+    @Setup
+    public void createGenerators()
+    {
+        myUncached = new ConstantNameGenerator(0);
+        myCached = new ConstantNameGenerator(4096);
+    }
+
+    @Benchmark
+    public String nameForLiteral(LiteralCorpus corpus)
+    {
+        int i = corpus.next();
+        return myUncached.nameForLiteral(corpus.myTexts[i], corpus.myNumericTypeNames[i]);
+    }
+
+    @Benchmark
+    public String nameForLiteralCached(LiteralCorpus corpus)
+    {
+        int i = corpus.next();
+        return myCached.nameForLiteral(corpus.myTexts[i], corpus.myNumericTypeNames[i]);
+    }
+
+    @Benchmark
+    public String nameForArgument(LiteralCorpus corpus)
+    {
+        return myUncached.nameForArgument("VALUE", corpus.myTexts[corpus.next()]);
+    }
+
+    @Benchmark
+    public String cleanSpecialCharacters(LiteralCorpus corpus)
+    {
+        return ConstantNameGenerator.cleanSpecialCharacters(corpus.myTexts[corpus.next()]);
+    }
+
+    @Benchmark
+    public String nameForPackageHolder()
+    {
+        String packageName = PACKAGES[myPackageCursor];
+        myPackageCursor = myPackageCursor + 1 < PACKAGES.length ? myPackageCursor + 1 : 0;
+        return myUncached.nameForPackageHolder(packageName);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classification stage: the context of one literal of a 10k literal file, from the single ancestor walk the
+ * inspection uses, next to the separate walks of the filters it replaced. The scores are per literal.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LiteralClassifierBenchmark
+{
+    private SyntheticSourceFile.Walker myWalker;
+    private OutputSinkRegistry mySinks;
+
+    @Setup
+    public void createWalker()
+    {
+        myWalker = new SyntheticSourceFile.Walker();
+        mySinks = OutputSinkRegistry.getInstance(OutputSinkRegistry.DEFAULT_SINKS);
+    }
+
+    @Benchmark
+    public LiteralContext onePass(SyntheticSourceFile file)
+    {
+        int i = file.next();
+        return myWalker.classify(file.myLiterals[i], file.myKinds[i], mySinks);
+    }
+
+    /**
+     * The filter chain before the classifier: the innermost call, the annotation and the field each looked up with a
+     * walk of their own, plus the assignment and local variable walks for booleans.
+     */
+    @Benchmark
+    public boolean separateWalks(SyntheticSourceFile file)
+    {
+        int i = file.next();
+        SyntheticSourceFile.Node literal = file.myLiterals[i];
+        SyntheticSourceFile.Node parent = literal.myParent;
+        boolean retVal = isPrinted(literal)
+            || (parent.myType == LiteralAncestorWalker.LOCAL_VARIABLE && parent.myParent.myType == LiteralAncestorWalker.DECLARATION_STATEMENT)
+            || (file.myKinds[i] == LiteralValueNormalizer.STRING_KIND && parent.myOperators != 0)
+            || (file.myKinds[i] == LiteralValueNormalizer.BOOLEAN_KIND && (hasAncestor(literal, LiteralAncestorWalker.ASSIGNMENT)
+                                                                           || hasAncestor(literal, LiteralAncestorWalker.LOCAL_VARIABLE)
+                                                                           || parent.myType == LiteralAncestorWalker.RETURN))
+            || hasAncestor(literal, LiteralAncestorWalker.ANNOTATION);
+        return retVal || hasAncestor(literal, LiteralAncestorWalker.FIELD);
+    }
+
+    private boolean isPrinted(SyntheticSourceFile.Node literal)
+    {
+        boolean retVal = false;
+        SyntheticSourceFile.Node call = literal.myParent;
+        while(call != null && call.myType != LiteralAncestorWalker.METHOD_CALL)
+        {
+            call = call.myParent;
+        }
+        if(call != null)
+        {
+            String[] targets = call.myCallTargets;
+            for(int i = 1; i < targets.length && !retVal; i++)
+            {
+                retVal = mySinks.isSink(targets[i], targets[0]);
+            }
+        }
+        return retVal;
+    }
+
+    private static boolean hasAncestor(SyntheticSourceFile.Node literal, int type)
+    {
+        SyntheticSourceFile.Node ancestor = literal.myParent;
+        while(ancestor != null && ancestor.myType != type)
+        {
+            ancestor = ancestor.myParent;
+        }
+        return ancestor != null;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One of the literal corpora under src/jmh/resources, loaded once per benchmark. The benchmarks take one literal
+ * per invocation in turn, so the scores are per literal.
+ */
+@State(Scope.Thread)
+public class LiteralCorpus
+{
+    @Param({"urls", "sql", "numeric", "single-char"})
+    public String corpus;
+
+    String[] myTexts;
+    char[] myKinds;
+    String[] myNumericTypeNames;
+    private int myCursor;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException
+    {
+        List<String> texts = new ArrayList<String>();
+        List<String> types = new ArrayList<String>();
+        String fileName = "corpus-" + corpus + ".txt";
+        InputStream stream = LiteralCorpus.class.getResourceAsStream(fileName);
+        if(stream == null)
+        {
+            throw new IOException("Missing corpus " + fileName);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+                int separator = line.indexOf('\t');
+                if(separator > 0 && !line.startsWith("#"))
+                {
+                    types.add(line.substring(0, separator));
+                    texts.add(line.substring(separator + 1));
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        myTexts = texts.toArray(new String[texts.size()]);
+        myKinds = new char[myTexts.length];
+        myNumericTypeNames = new String[myTexts.length];
+        for(int i = 0; i < myTexts.length; i++)
+        {
+            String type = types.get(i);
+            myKinds[i] = getKind(type);
+            if(myKinds[i] == LiteralValueNormalizer.INTEGRAL_KIND || myKinds[i] == LiteralValueNormalizer.FLOATING_KIND)
+            {
+                myNumericTypeNames[i] = type;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the literal for this invocation
+     */
+    int next()
+    {
+        int retVal = myCursor;
+        myCursor = retVal + 1 < myTexts.length ? retVal + 1 : 0;
+        return retVal;
+    }
+
+    private static char getKind(String type)
+    {
+        char retVal = LiteralValueNormalizer.INTEGRAL_KIND;
+        if(type.equals("String"))
+        {
+            retVal = LiteralValueNormalizer.STRING_KIND;
+        }
+        else if(type.equals("char"))
+        {
+            retVal = LiteralValueNormalizer.CHARACTER_KIND;
+        }
+        else if(type.equals("boolean"))
+        {
+            retVal = LiteralValueNormalizer.BOOLEAN_KIND;
+        }
+        else if(type.equals("float") || type.equals("double"))
+        {
+            retVal = LiteralValueNormalizer.FLOATING_KIND;
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering stage: the text filters the inspection runs on every literal, the configurable rule set with the
+ * options a typical project uses, and the value normalization both of them and the literal index rely on.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LiteralFilterBenchmark
+{
+    private LiteralFilter myDefaultFilter;
+    private LiteralFilter myRuleSet;
+
+    @Setup
+    public void createFilters()
+    {
+        myDefaultFilter = DefaultLiteralFilter.getInstance();
+        myRuleSet = LiteralRuleSet.getInstance("0, 1, -1, \"\", ' '", "", "\"(SELECT|INSERT|UPDATE|DELETE) .*\"", "boolean:ignore", 2,
+                                               LiteralRuleSet.OccurrenceScope.FILE.name());
+    }
+
+    @Benchmark
+    public boolean defaultFilter(LiteralCorpus corpus)
+    {
+        int i = corpus.next();
+        return myDefaultFilter.isExcluded(corpus.myTexts[i], corpus.myKinds[i]);
+    }
+
+    @Benchmark
+    public boolean ruleSet(LiteralCorpus corpus)
+    {
+        int i = corpus.next();
+        return myRuleSet.isExcluded(corpus.myTexts[i], corpus.myKinds[i]);
+    }
+
+    @Benchmark
+    public String normalize(LiteralCorpus corpus)
+    {
+        int i = corpus.next();
+        return LiteralValueNormalizer.normalize(corpus.myKinds[i], corpus.myTexts[i]);
+    }
+}
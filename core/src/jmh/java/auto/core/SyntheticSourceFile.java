@@ -0,0 +1,202 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tree of a literal dense source file, shaped like the PSI of a class with lookup tables, logging and i18n maps:
+ * fields, local declarations, call arguments, printed and concatenated strings, returns, ternaries and annotations,
+ * some of them nested in blocks. Only the node types the classifier asks for are modelled.
+ */
+@State(Scope.Thread)
+public class SyntheticSourceFile
+{
+    private static final String[] NO_TARGETS = new String[0];
+    private static final String[] PRINTLN = {"println", "java.io.PrintStream"};
+    private static final String[] PUT = {"put", "java.util.HashMap", "java.util.Map"};
+    private static final String[] DEBUG = {"debug", "org.slf4j.Logger"};
+    private static final int STATEMENT_SHAPES = 10;
+
+    @Param("10000")
+    public int literals;
+
+    Node[] myLiterals;
+    char[] myKinds;
+    private int myCursor;
+
+    @Setup(Level.Trial)
+    public void build()
+    {
+        List<Node> found = new ArrayList<Node>();
+        List<Character> kinds = new ArrayList<Character>();
+        Node file = new Node(LiteralAncestorWalker.FILE, null);
+        Node aClass = new Node(LiteralAncestorWalker.OTHER, file);
+        Node method = null;
+        Node block = null;
+        for(int i = 0; found.size() < literals; i++)
+        {
+            if(i % 50 == 0)
+            {
+                method = new Node(LiteralAncestorWalker.OTHER, aClass);
+                block = new Node(LiteralAncestorWalker.OTHER, method);
+            }
+            // every third statement sits two blocks deeper, in an if inside a loop
+            Node statementParent = i % 3 == 0 ? new Node(LiteralAncestorWalker.OTHER, new Node(LiteralAncestorWalker.OTHER, block)) : block;
+            addStatement(i % STATEMENT_SHAPES, aClass, method, statementParent, found, kinds);
+        }
+
+        myLiterals = found.subList(0, literals).toArray(new Node[literals]);
+        myKinds = new char[literals];
+        for(int i = 0; i < literals; i++)
+        {
+            myKinds[i] = kinds.get(i);
+        }
+    }
+
+    private static void addStatement(int shape, Node aClass, Node method, Node block, List<Node> found, List<Character> kinds)
+    {
+        Node parent;
+        char kind = LiteralValueNormalizer.STRING_KIND;
+        switch(shape)
+        {
+            case 0:
+                // private static final String KEY = "value";
+                parent = new Node(LiteralAncestorWalker.FIELD, aClass);
+                break;
+            case 1:
+                // String value = "value";
+                parent = new Node(LiteralAncestorWalker.LOCAL_VARIABLE, new Node(LiteralAncestorWalker.DECLARATION_STATEMENT, block));
+                break;
+            case 2:
+                // map.put("key", "value");
+                parent = argumentList(PUT, block);
+                addLiteral(parent, kind, found, kinds);
+                break;
+            case 3:
+                // System.out.println("value");
+                parent = argumentList(PRINTLN, block);
+                break;
+            case 4:
+                // LOG.debug("value " + name);
+                parent = new Node(LiteralAncestorWalker.OTHER, argumentList(DEBUG, block), LiteralAncestorWalker.PLUS, NO_TARGETS);
+                break;
+            case 5:
+                // return 42;
+                parent = new Node(LiteralAncestorWalker.RETURN, block);
+                kind = LiteralValueNormalizer.INTEGRAL_KIND;
+                break;
+            case 6:
+                // value = flag ? "yes" : "no";
+                parent = new Node(LiteralAncestorWalker.OTHER, new Node(LiteralAncestorWalker.ASSIGNMENT, new Node(LiteralAncestorWalker.OTHER, block)),
+                                  LiteralAncestorWalker.QUEST | LiteralAncestorWalker.COLON, NO_TARGETS);
+                addLiteral(parent, kind, found, kinds);
+                break;
+            case 7:
+                // @SuppressWarnings("unchecked") on the method
+                parent = new Node(LiteralAncestorWalker.OTHER, new Node(LiteralAncestorWalker.ANNOTATION, new Node(LiteralAncestorWalker.OTHER, method)));
+                break;
+            case 8:
+                // enabled = true;
+                parent = new Node(LiteralAncestorWalker.ASSIGNMENT, new Node(LiteralAncestorWalker.OTHER, block));
+                kind = LiteralValueNormalizer.BOOLEAN_KIND;
+                break;
+            default:
+                // unresolved.call(new Object[]{"a", 1});
+                parent = new Node(LiteralAncestorWalker.OTHER, new Node(LiteralAncestorWalker.OTHER, argumentList(NO_TARGETS, block)));
+                addLiteral(parent, kind, found, kinds);
+                kind = LiteralValueNormalizer.INTEGRAL_KIND;
+                break;
+        }
+        addLiteral(parent, kind, found, kinds);
+    }
+
+    private static Node argumentList(String[] callTargets, Node block)
+    {
+        Node call = new Node(LiteralAncestorWalker.METHOD_CALL, new Node(LiteralAncestorWalker.OTHER, block), 0, callTargets);
+        return new Node(LiteralAncestorWalker.OTHER, call);
+    }
+
+    private static void addLiteral(Node parent, char kind, List<Node> found, List<Character> kinds)
+    {
+        found.add(new Node(LiteralAncestorWalker.OTHER, parent));
+        kinds.add(kind);
+    }
+
+    /**
+     * @return the index of the literal for this invocation
+     */
+    int next()
+    {
+        int retVal = myCursor;
+        myCursor = retVal + 1 < myLiterals.length ? retVal + 1 : 0;
+        return retVal;
+    }
+
+    static final class Node
+    {
+        final int myType;
+        final Node myParent;
+        final int myOperators;
+        final String[] myCallTargets;
+
+        Node(int type, Node parent)
+        {
+            this(type, parent, 0, NO_TARGETS);
+        }
+
+        Node(int type, Node parent, int operators, String[] callTargets)
+        {
+            myType = type;
+            myParent = parent;
+            myOperators = operators;
+            myCallTargets = callTargets;
+        }
+    }
+
+    /**
+     * Tells the walker what the nodes are, the way the PSI classifier does for the real tree.
+     */
+    static final class Walker extends LiteralAncestorWalker<Node>
+    {
+        protected Node getParent(Node element)
+        {
+            return element.myParent;
+        }
+
+        protected int getNodeType(Node element)
+        {
+            return element.myType;
+        }
+
+        protected int getOperators(Node element)
+        {
+            return element.myOperators;
+        }
+
+        protected String[] getCallTargets(Node methodCall)
+        {
+            return methodCall.myCallTargets;
+        }
+    }
+}
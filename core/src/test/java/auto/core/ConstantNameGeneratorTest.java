@@ -0,0 +1,148 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link ConstantNameGenerator} names every literal of the golden corpus exactly as the old replaceAll
+ * chain did, with and without its cache.
+ */
+public class ConstantNameGeneratorTest
+{
+    private static final String GOLDEN_FILE = "constant-names.golden";
+
+    @Test
+    public void testGoldenNames() throws IOException
+    {
+        ConstantNameGenerator uncached = new ConstantNameGenerator(0);
+        for(String[] entry : readGoldenFile())
+        {
+            assertEquals(describe(entry), entry[3], name(uncached, entry));
+        }
+    }
+
+    @Test
+    public void testCachedNamesMatchGoldenNames() throws IOException
+    {
+        ConstantNameGenerator cached = new ConstantNameGenerator(16);
+        List<String[]> entries = readGoldenFile();
+        for(int pass = 0; pass < 2; pass++)
+        {
+            for(String[] entry : entries)
+            {
+                assertEquals(describe(entry), entry[3], name(cached, entry));
+            }
+        }
+    }
+
+    @Test
+    public void testGoldenNamesMatchLegacyChain() throws IOException
+    {
+        for(String[] entry : readGoldenFile())
+        {
+            assertEquals(describe(entry), entry[3], legacyName(entry));
+        }
+    }
+
+    @Test
+    public void testCleanSpecialCharactersMatchesLegacyChain() throws IOException
+    {
+        for(String[] entry : readGoldenFile())
+        {
+            assertEquals(describe(entry), LegacyConstantNames.cleanSpecialCharacters(entry[2]),
+                         ConstantNameGenerator.cleanSpecialCharacters(entry[2]));
+        }
+    }
+
+    @Test
+    public void testOnlySpecialCharactersCleanToEmptyName()
+    {
+        assertEquals("", ConstantNameGenerator.cleanSpecialCharacters("\"(\""));
+        assertEquals("", ConstantNameGenerator.cleanSpecialCharacters(""));
+    }
+
+    private static String name(ConstantNameGenerator generator, String[] entry)
+    {
+        String retVal;
+        if("argument".equals(entry[0]))
+        {
+            retVal = generator.nameForArgument(entry[1], entry[2]);
+        }
+        else
+        {
+            retVal = generator.nameForLiteral(entry[2], entry[1].length() > 0 ? entry[1] : null);
+        }
+        return retVal;
+    }
+
+    private static String legacyName(String[] entry)
+    {
+        String retVal;
+        if("argument".equals(entry[0]))
+        {
+            retVal = LegacyConstantNames.nameForArgument(entry[1], entry[2]);
+        }
+        else
+        {
+            retVal = LegacyConstantNames.nameForLiteral(entry[2], entry[1].length() > 0 ? entry[1] : null);
+        }
+        return retVal;
+    }
+
+    private static String describe(String[] entry)
+    {
+        return entry[0] + " " + entry[1] + " " + entry[2];
+    }
+
+    private static List<String[]> readGoldenFile() throws IOException
+    {
+        List<String[]> retVal = new ArrayList<String[]>();
+        InputStream stream = ConstantNameGeneratorTest.class.getResourceAsStream(GOLDEN_FILE);
+        assertNotNull(GOLDEN_FILE, stream);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+        try
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+                if(line.length() > 0 && !line.startsWith("#"))
+                {
+                    String[] entry = line.split("\t", -1);
+                    assertEquals(line, 4, entry.length);
+                    retVal.add(entry);
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        assertTrue(GOLDEN_FILE, !retVal.isEmpty());
+        return retVal;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+/**
+ * The replaceAll chain that named constants before {@link ConstantNameGenerator} replaced it, kept verbatim as the
+ * reference for the golden tests. The only change is the guard on an empty result, which used to fail on charAt(0)
+ * and so never reached the spelled out fallback.
+ */
+final class LegacyConstantNames
+{
+    private LegacyConstantNames()
+    {
+    }
+
+    static String nameForArgument(String parameterName, String literalText)
+    {
+        String text = literalText;
+        if(text.matches(".http.*"))
+        {
+            int lastIndex = text.lastIndexOf("/");
+            text = text.substring(lastIndex + 1, text.length());
+        }
+        return cleanSpecialCharacters(parameterName + "_" + text);
+    }
+
+    static String nameForLiteral(String literalText, String numericTypeName)
+    {
+        String retVal;
+        if(numericTypeName == null)
+        {
+            retVal = cleanSpecialCharacters(literalText);
+            if(retVal.length() == 0)
+            {
+                retVal = literalText;
+                retVal = retVal.replaceAll("[\"]","");
+                retVal = retVal.replaceAll("[\\\\]","SLASH");
+                retVal = retVal.replaceAll("[=]", "EQUALS");
+                retVal = retVal.replaceAll("[*]","ASTERISK");
+                retVal = retVal.replaceAll("[(]","OPEN_PARENTHESIS");
+                retVal = retVal.replaceAll("[)]","CLOSE_PARENTHESIS");
+            }
+        }
+        else
+        {
+            retVal = numericTypeName.toUpperCase() + "_" + literalText;
+        }
+        return retVal;
+    }
+
+    static String cleanSpecialCharacters(String retVal)
+    {
+        retVal = retVal.replaceAll(";","SEMICOLON");
+        retVal = retVal.replaceAll(",","COMMA");
+        retVal = retVal.replaceAll("[\']", "SINGLE_QUOTE");
+        retVal = retVal.replaceAll("[\\\\]","");
+        retVal = retVal.replaceAll("[\\\"=*():#$@!^]","");
+        retVal = retVal.replaceAll("[%]","_PERCENT");
+        retVal = retVal.replaceAll(" ","_");
+        retVal = retVal.replaceAll("[.]","_");
+        retVal = retVal.replaceAll("-","_");
+        retVal = retVal.replaceAll("/","_");
+        if(retVal.startsWith("_"))
+        {
+            retVal = retVal.substring(1);
+        }
+        if(retVal.length() > 0 && Character.isDigit(retVal.charAt(0)))
+        {
+            retVal = "CONST_" + retVal;
+        }
+        retVal = retVal.trim();
+        retVal = retVal.toUpperCase();
+        return retVal;
+    }
+}
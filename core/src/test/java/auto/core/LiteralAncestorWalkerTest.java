@@ -0,0 +1,150 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the flags {@link LiteralAncestorWalker} collects on a small hand built tree.
+ */
+public class LiteralAncestorWalkerTest
+{
+    private static final String[] NO_TARGETS = new String[0];
+    private static final OutputSinkRegistry SINKS = OutputSinkRegistry.getInstance(OutputSinkRegistry.DEFAULT_SINKS);
+
+    private final Node myFile = new Node(LiteralAncestorWalker.FILE, null);
+    private final Node myClass = new Node(LiteralAncestorWalker.OTHER, myFile);
+    private final Node myBlock = new Node(LiteralAncestorWalker.OTHER, new Node(LiteralAncestorWalker.OTHER, myClass));
+
+    @Test
+    public void testLocalDeclaration()
+    {
+        Node variable = new Node(LiteralAncestorWalker.LOCAL_VARIABLE, new Node(LiteralAncestorWalker.DECLARATION_STATEMENT, myBlock));
+        LiteralContext context = classify(variable, LiteralValueNormalizer.STRING_KIND);
+        assertTrue(context.is(LiteralContext.LOCAL_DECLARATION | LiteralContext.IN_LOCAL_VARIABLE));
+        assertTrue(context.isExcluded());
+    }
+
+    @Test
+    public void testOnlyTheInnermostCallDecidesPrinting()
+    {
+        Node println = call(new String[]{"println", "java.io.PrintStream"}, myBlock);
+        assertEquals(LiteralContext.IN_PRINT_CALL, classify(arguments(println), LiteralValueNormalizer.STRING_KIND).getFlags());
+
+        Node nested = call(new String[]{"format", "java.lang.String"}, arguments(println));
+        assertFalse(classify(arguments(nested), LiteralValueNormalizer.STRING_KIND).is(LiteralContext.IN_PRINT_CALL));
+
+        Node unresolved = call(NO_TARGETS, myBlock);
+        assertEquals(0, classify(arguments(unresolved), LiteralValueNormalizer.STRING_KIND).getFlags());
+    }
+
+    @Test
+    public void testOperatorsOfTheParent()
+    {
+        Node concatenation = new Node(LiteralAncestorWalker.OTHER, myBlock, LiteralAncestorWalker.PLUS, NO_TARGETS);
+        assertTrue(classify(concatenation, LiteralValueNormalizer.STRING_KIND).is(LiteralContext.CONCATENATION));
+
+        Node colonOnly = new Node(LiteralAncestorWalker.OTHER, myBlock, LiteralAncestorWalker.COLON, NO_TARGETS);
+        assertFalse(classify(colonOnly, LiteralValueNormalizer.STRING_KIND).is(LiteralContext.TERNARY));
+
+        Node ternary = new Node(LiteralAncestorWalker.OTHER, new Node(LiteralAncestorWalker.ASSIGNMENT, myBlock),
+                                LiteralAncestorWalker.QUEST | LiteralAncestorWalker.COLON, NO_TARGETS);
+        assertEquals(LiteralContext.TERNARY | LiteralContext.IN_ASSIGNMENT, classify(ternary, LiteralValueNormalizer.STRING_KIND).getFlags());
+    }
+
+    @Test
+    public void testAncestorsAboveTheFileAreIgnored()
+    {
+        Node outer = new Node(LiteralAncestorWalker.ANNOTATION, null);
+        Node file = new Node(LiteralAncestorWalker.FILE, outer);
+        Node field = new Node(LiteralAncestorWalker.FIELD, new Node(LiteralAncestorWalker.OTHER, file));
+        LiteralContext context = classify(field, LiteralValueNormalizer.INTEGRAL_KIND);
+        assertEquals(LiteralContext.IN_FIELD, context.getFlags());
+        assertTrue(context.isInField());
+        assertFalse(context.isExcluded());
+    }
+
+    @Test
+    public void testBooleanReturn()
+    {
+        Node returnStatement = new Node(LiteralAncestorWalker.RETURN, myBlock);
+        assertTrue(classify(returnStatement, LiteralValueNormalizer.BOOLEAN_KIND).isExcluded());
+        assertFalse(classify(returnStatement, LiteralValueNormalizer.INTEGRAL_KIND).isExcluded());
+    }
+
+    private static LiteralContext classify(Node parent, char kind)
+    {
+        return new Walker().classify(new Node(LiteralAncestorWalker.OTHER, parent), kind, SINKS);
+    }
+
+    private static Node call(String[] targets, Node parent)
+    {
+        return new Node(LiteralAncestorWalker.METHOD_CALL, new Node(LiteralAncestorWalker.OTHER, parent), 0, targets);
+    }
+
+    private static Node arguments(Node call)
+    {
+        return new Node(LiteralAncestorWalker.OTHER, call);
+    }
+
+    private static final class Node
+    {
+        private final int myType;
+        private final Node myParent;
+        private final int myOperators;
+        private final String[] myCallTargets;
+
+        private Node(int type, Node parent)
+        {
+            this(type, parent, 0, NO_TARGETS);
+        }
+
+        private Node(int type, Node parent, int operators, String[] callTargets)
+        {
+            myType = type;
+            myParent = parent;
+            myOperators = operators;
+            myCallTargets = callTargets;
+        }
+    }
+
+    private static final class Walker extends LiteralAncestorWalker<Node>
+    {
+        protected Node getParent(Node element)
+        {
+            return element.myParent;
+        }
+
+        protected int getNodeType(Node element)
+        {
+            return element.myType;
+        }
+
+        protected int getOperators(Node element)
+        {
+            return element.myOperators;
+        }
+
+        protected String[] getCallTargets(Node methodCall)
+        {
+            return methodCall.myCallTargets;
+        }
+    }
+}
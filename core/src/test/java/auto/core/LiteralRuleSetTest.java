@@ -0,0 +1,94 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the type policies of {@link LiteralRuleSet} apply to their own type only and that the defaults
+ * exclude nothing.
+ */
+public class LiteralRuleSetTest
+{
+    private static final char INTEGRAL = LiteralValueNormalizer.INTEGRAL_KIND;
+    private static final char FLOATING = LiteralValueNormalizer.FLOATING_KIND;
+    private static final char STRING = LiteralValueNormalizer.STRING_KIND;
+
+    @Test
+    public void testDefaultsExcludeNothing()
+    {
+        LiteralRuleSet rules = getRules(LiteralRuleSet.DEFAULT_IGNORED_VALUES, LiteralRuleSet.DEFAULT_TYPE_POLICIES);
+        assertFalse(rules.isExcluded("0", INTEGRAL));
+        assertFalse(rules.isExcluded("1", INTEGRAL));
+        assertFalse(rules.isExcluded("1", INTEGRAL, true));
+        assertEquals(LiteralRuleSet.DEFAULT_MIN_OCCURRENCES, rules.getMinOccurrences("1", INTEGRAL));
+    }
+
+    @Test
+    public void testIgnoredValues()
+    {
+        LiteralRuleSet rules = getRules("0, 1, -1", "");
+        assertTrue(rules.isExcluded("0x1", INTEGRAL));
+        assertTrue(rules.isExcluded("1L", INTEGRAL));
+        assertTrue(rules.isExcluded("1", INTEGRAL, true));
+        assertFalse(rules.isExcluded("2", INTEGRAL));
+        assertFalse(rules.isExcluded("0", INTEGRAL, true));
+    }
+
+    @Test
+    public void testIgnoredTypesDoNotShareTheirKind()
+    {
+        LiteralRuleSet rules = getRules("", "int:ignore, float:ignore");
+        assertTrue(rules.isExcluded("42", INTEGRAL));
+        assertTrue(rules.isExcluded("0x2A", INTEGRAL));
+        assertFalse(rules.isExcluded("42L", INTEGRAL));
+        assertTrue(rules.isExcluded("1.5f", FLOATING));
+        assertFalse(rules.isExcluded("1.5", FLOATING));
+        assertFalse(rules.isExcluded("1.5d", FLOATING));
+        assertFalse(rules.isExcluded("\"42\"", STRING));
+    }
+
+    @Test
+    public void testMinOccurrencesDoNotShareTheirKind()
+    {
+        LiteralRuleSet rules = getRules("", "long:3, int:2, double:4");
+        assertEquals(2, rules.getMinOccurrences("7", INTEGRAL));
+        assertEquals(3, rules.getMinOccurrences("7l", INTEGRAL));
+        assertEquals(4, rules.getMinOccurrences("7.0", FLOATING));
+        assertEquals(LiteralRuleSet.DEFAULT_MIN_OCCURRENCES, rules.getMinOccurrences("7.0F", FLOATING));
+    }
+
+    @Test
+    public void testTypeNames()
+    {
+        assertEquals("int", LiteralRuleSet.getTypeName("0xFF", INTEGRAL));
+        assertEquals("long", LiteralRuleSet.getTypeName("0xFFL", INTEGRAL));
+        assertEquals("double", LiteralRuleSet.getTypeName("1e10", FLOATING));
+        assertEquals("float", LiteralRuleSet.getTypeName("1e10F", FLOATING));
+        assertEquals("string", LiteralRuleSet.getTypeName("\"l\"", STRING));
+        assertEquals(null, LiteralRuleSet.getTypeName("null", (char)0));
+    }
+
+    private static LiteralRuleSet getRules(String ignoredValues, String typePolicies)
+    {
+        return LiteralRuleSet.getInstance(ignoredValues, "", "", typePolicies, LiteralRuleSet.DEFAULT_MIN_OCCURRENCES,
+                                          LiteralRuleSet.OccurrenceScope.FILE.name());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that {@link LiteralValueNormalizer} keys numeric literals on their value, whatever their notation, and
+ * everything else on its text.
+ */
+public class LiteralValueNormalizerTest
+{
+    private static final char INTEGRAL = LiteralValueNormalizer.INTEGRAL_KIND;
+    private static final char FLOATING = LiteralValueNormalizer.FLOATING_KIND;
+
+    @Test
+    public void testIntegralNotationsShareTheirKey()
+    {
+        String key = LiteralValueNormalizer.normalize(INTEGRAL, "16");
+        assertEquals("I:16", key);
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "0x10"));
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "0X10"));
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "020"));
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "1_6"));
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "0b1_0000"));
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "16L"));
+        assertEquals(key, LiteralValueNormalizer.normalize(INTEGRAL, "0x10l"));
+    }
+
+    @Test
+    public void testZeroIsNotOctal()
+    {
+        assertEquals("I:0", LiteralValueNormalizer.normalize(INTEGRAL, "0"));
+        assertEquals("I:0", LiteralValueNormalizer.normalize(INTEGRAL, "00"));
+        assertEquals("I:0", LiteralValueNormalizer.normalize(INTEGRAL, "0L"));
+        assertEquals("I:8", LiteralValueNormalizer.normalize(INTEGRAL, "010"));
+    }
+
+    @Test
+    public void testIntLiteralsWrapAround()
+    {
+        assertEquals("I:-1", LiteralValueNormalizer.normalize(INTEGRAL, "0xFFFFFFFF"));
+        assertEquals("I:-2147483648", LiteralValueNormalizer.normalize(INTEGRAL, "0x8000_0000"));
+        assertEquals("I:-1", LiteralValueNormalizer.normalize(INTEGRAL, "037777777777"));
+        assertEquals("I:-1", LiteralValueNormalizer.normalize(INTEGRAL, "0b11111111111111111111111111111111"));
+        // long and decimal literals keep their value
+        assertEquals("I:4294967295", LiteralValueNormalizer.normalize(INTEGRAL, "0xFFFFFFFFL"));
+        assertEquals("I:2147483648", LiteralValueNormalizer.normalize(INTEGRAL, "2147483648"));
+        assertEquals("I:-1", LiteralValueNormalizer.normalize(INTEGRAL, "0xFFFFFFFFFFFFFFFFL"));
+        assertFalse(LiteralValueNormalizer.normalize(INTEGRAL, "0xFFFFFFFF").equals(LiteralValueNormalizer.normalize(INTEGRAL, "0xFFFFFFFFL")));
+    }
+
+    @Test
+    public void testMalformedLiteralsKeepTheirText()
+    {
+        assertEquals("I:0x", LiteralValueNormalizer.normalize(INTEGRAL, "0x"));
+        assertEquals("I:09", LiteralValueNormalizer.normalize(INTEGRAL, "09"));
+        assertEquals("I:12abc", LiteralValueNormalizer.normalize(INTEGRAL, "12abc"));
+        assertEquals("I:L", LiteralValueNormalizer.normalize(INTEGRAL, "L"));
+        assertEquals("F:1.5.2", LiteralValueNormalizer.normalize(FLOATING, "1.5.2"));
+    }
+
+    @Test
+    public void testFloatingNotationsShareTheirKey()
+    {
+        String key = LiteralValueNormalizer.normalize(FLOATING, "1000.0");
+        assertEquals("F:1000.0", key);
+        assertEquals(key, LiteralValueNormalizer.normalize(FLOATING, "1000.000"));
+        assertEquals(key, LiteralValueNormalizer.normalize(FLOATING, "1e3"));
+        assertEquals(key, LiteralValueNormalizer.normalize(FLOATING, "1_000d"));
+        assertEquals(key, LiteralValueNormalizer.normalize(FLOATING, "0x1.f4p9"));
+    }
+
+    @Test
+    public void testOtherKindsAreKeyedOnTheirText()
+    {
+        assertEquals("S:\"16\"", LiteralValueNormalizer.normalize(LiteralValueNormalizer.STRING_KIND, "\"16\""));
+        assertEquals("C:'a'", LiteralValueNormalizer.normalize(LiteralValueNormalizer.CHARACTER_KIND, "'a'"));
+        assertEquals("B:true", LiteralValueNormalizer.normalize(LiteralValueNormalizer.BOOLEAN_KIND, "true"));
+        assertFalse(LiteralValueNormalizer.normalize(LiteralValueNormalizer.STRING_KIND, "\"0x10\"")
+                        .equals(LiteralValueNormalizer.normalize(LiteralValueNormalizer.STRING_KIND, "\"16\"")));
+    }
+
+    @Test
+    public void testNothingToKey()
+    {
+        assertNull(LiteralValueNormalizer.normalize(INTEGRAL, null));
+        assertNull(LiteralValueNormalizer.normalize(INTEGRAL, ""));
+        // the null keyword has no kind
+        assertNull(LiteralValueNormalizer.normalize((char)0, "null"));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a summary since a snapshot reports only what was recorded after it.
+ */
+public class PhaseMetricsTest
+{
+    private static final PhaseMetrics METRICS = PhaseMetrics.getInstance();
+
+    @Test
+    public void testSummarySinceSnapshot()
+    {
+        METRICS.record(PhaseMetrics.Phase.REFORMAT, METRICS.start());
+        METRICS.addOccurrences("before", 3);
+        PhaseMetrics.Snapshot snapshot = METRICS.snapshot();
+        METRICS.record(PhaseMetrics.Phase.IMPORTS, METRICS.start());
+        METRICS.record(PhaseMetrics.Phase.IMPORTS, METRICS.start());
+        METRICS.addOccurrences("after", 5);
+
+        String summary = METRICS.getSummary(snapshot);
+        assertTrue(summary, summary.contains(PhaseMetrics.Phase.IMPORTS.getDisplayName() + ": 2,"));
+        assertFalse(summary, summary.contains(PhaseMetrics.Phase.REFORMAT.getDisplayName()));
+        assertTrue(summary, summary.contains("occurrences found for after: 5"));
+        assertFalse(summary, summary.contains("occurrences found for before"));
+    }
+
+    @Test
+    public void testSnapshotDoesNotChangeTotals()
+    {
+        long count = METRICS.getCount(PhaseMetrics.Phase.FIELD_CREATION);
+        METRICS.record(PhaseMetrics.Phase.FIELD_CREATION, METRICS.start());
+        METRICS.snapshot();
+        assertEquals(count + 1, METRICS.getCount(PhaseMetrics.Phase.FIELD_CREATION));
+        assertTrue(METRICS.getSummary(null).contains(PhaseMetrics.Phase.FIELD_CREATION.getDisplayName()));
+    }
+
+    @Test
+    public void testAnalysisCacheHitsSinceStartup()
+    {
+        PhaseMetrics.Snapshot snapshot = METRICS.snapshot();
+        METRICS.countAnalysisRequest();
+        METRICS.countAnalysisComputation();
+        METRICS.countAnalysisRequest();
+        assertTrue(METRICS.getSummary(snapshot).contains("file analysis cache since startup: "));
+        assertTrue(METRICS.getSummary(null).contains(" hits ("));
+    }
+}
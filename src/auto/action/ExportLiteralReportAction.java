@@ -0,0 +1,93 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.action;
+
+import auto.core.OutputSinkRegistry;
+import auto.inspection.ConstantsExtractionInspection;
+import auto.report.LiteralReportExporter;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Exports every literal of the project to a CSV or JSON file, see {@link LiteralReportExporter}.
+ */
+public class ExportLiteralReportAction extends AnAction
+{
+    private static final String TITLE = "Export Literal Report";
+    private static final String DEFAULT_FILE_NAME = "literals.csv";
+
+    @Override
+    public void update(AnActionEvent e)
+    {
+        e.getPresentation().setEnabled(e.getData(PlatformDataKeys.PROJECT) != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e)
+    {
+        Project project = e.getData(PlatformDataKeys.PROJECT);
+        if(project != null)
+        {
+            VirtualFile baseDir = project.getBaseDir();
+            String defaultPath = baseDir != null ? new File(baseDir.getPath(), DEFAULT_FILE_NAME).getPath() : DEFAULT_FILE_NAME;
+            String path = Messages.showInputDialog(project, "Report file (.json for JSON, anything else for CSV):", TITLE,
+                                                   Messages.getQuestionIcon(), defaultPath, null);
+            if(path != null && path.trim().length() > 0)
+            {
+                export(project, path.trim());
+            }
+        }
+    }
+
+    private static void export(Project project, final String path)
+    {
+        final LiteralReportExporter exporter = new LiteralReportExporter(project, OutputSinkRegistry.getInstance(ConstantsExtractionInspection.constExtract_outputSinks),
+                                                                         ConstantsExtractionInspection.getRules());
+        final IOException[] failure = new IOException[1];
+        boolean completed = ProgressManager.getInstance().runProcessWithProgressSynchronously(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    exporter.export(new File(path));
+                }
+                catch(IOException e)
+                {
+                    failure[0] = e;
+                }
+            }
+        }, TITLE, true, project);
+
+        if(failure[0] != null)
+        {
+            Messages.showErrorDialog(project, "Unable to write " + path + ": " + failure[0].getMessage(), TITLE);
+        }
+        else if(completed)
+        {
+            Messages.showInfoMessage(project, exporter.getLiteralsExported() + " literals of " + exporter.getFilesExported() + " files written to " + path,
+                                     TITLE);
+        }
+    }
+}
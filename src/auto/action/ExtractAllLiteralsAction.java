@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.action;
+
+import auto.core.OutputSinkRegistry;
+import auto.fix.BatchConstantsExtractor;
+import auto.fix.IntroduceAndPropagateDialog;
+import auto.inspection.ConstantsExtractionInspection;
+import auto.inspection.FileLiteralAnalysis;
+import auto.inspection.OccurrenceThreshold;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Extracts every literal the inspection reports in the class at the caret, or in the whole file when the caret
+ * isn't inside a class. The literals come from one walk over the file and are grouped by their text, so no
+ * occurrence search runs at all, and all constants are written in one command.
+ */
+public class ExtractAllLiteralsAction extends AnAction
+{
+    @Override
+    public void update(AnActionEvent e)
+    {
+        e.getPresentation().setEnabled(e.getData(PlatformDataKeys.PROJECT) != null && e.getData(LangDataKeys.PSI_FILE) instanceof PsiJavaFile);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent e)
+    {
+        Project project = e.getData(PlatformDataKeys.PROJECT);
+        PsiFile file = e.getData(LangDataKeys.PSI_FILE);
+        if(project != null && file instanceof PsiJavaFile)
+        {
+            // the caret offset and the literals have to match what was just typed
+            PsiDocumentManager.getInstance(project).commitAllDocuments();
+            PsiElement scope = getScope(file, e.getData(PlatformDataKeys.EDITOR));
+
+            FileLiteralAnalysis analysis = FileLiteralAnalysis.getInstance(file, OutputSinkRegistry.getInstance(ConstantsExtractionInspection.constExtract_outputSinks),
+                                                                           ConstantsExtractionInspection.getRules());
+            OccurrenceThreshold threshold = new OccurrenceThreshold(project);
+            List<PsiLiteralExpression> candidates = new ArrayList<PsiLiteralExpression>();
+            for(PsiLiteralExpression candidate : analysis.getCandidates())
+            {
+                if(PsiTreeUtil.isAncestor(scope, candidate, false) && threshold.isMet(candidate, analysis))
+                {
+                    candidates.add(candidate);
+                }
+            }
+            // the first literal of every value decides where its constant goes
+            Collections.sort(candidates, new Comparator<PsiLiteralExpression>()
+            {
+                public int compare(PsiLiteralExpression o1, PsiLiteralExpression o2)
+                {
+                    return o1.getTextOffset() - o2.getTextOffset();
+                }
+            });
+
+            BatchConstantsExtractor extractor = new BatchConstantsExtractor(project, IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND);
+            for(PsiLiteralExpression candidate : candidates)
+            {
+                extractor.addOccurrence(candidate, analysis.getLiteralInfo(candidate).getSuggestedName());
+            }
+            extractor.run();
+        }
+    }
+
+    private static PsiElement getScope(PsiFile file, Editor editor)
+    {
+        PsiElement retVal = file;
+        if(editor != null)
+        {
+            PsiClass topLevelClass = PsiUtil.getTopLevelClass(file.findElementAt(editor.getCaretModel().getOffset()));
+            if(topLevelClass != null)
+            {
+                retVal = topLevelClass;
+            }
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.batch;
+
+import auto.core.LiteralRuleSet;
+import auto.core.OutputSinkRegistry;
+import auto.fix.BatchConstantsExtractor;
+import auto.fix.IntroduceAndPropagateDialog;
+import auto.inspection.ConstantsExtractionInspection;
+import auto.inspection.FileLiteralAnalysis;
+import auto.inspection.OccurrenceThreshold;
+import auto.report.LiteralReportExporter;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ex.ProjectManagerEx;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ModuleFileIndex;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the constants extraction over a whole project without any UI, e.g. as a nightly job on a build agent:
+ * <pre>
+ * idea extractConstants &lt;project path&gt; [-mode=class|hierarchy|package|module|project] [-modules=name,...] [-threads=N] [-summary=file] [-report=file]
+ * </pre>
+ * The project is processed a module at a time: the files of the module are analyzed in parallel on a bounded pool,
+ * one read action per file, then the module's constants are written in batched commands and its documents are saved
+ * before the next module is analyzed, so only the literals of one module are held at any time. With -report nothing
+ * is changed, every literal of the project is exported to the given .csv or .json file instead.
+ */
+public class ConstantsExtractionStarter implements ApplicationStarter
+{
+    private static final String COMMAND_NAME = "extractConstants";
+    private static final String USAGE = "Usage: " + COMMAND_NAME
+        + " <project path> [-mode=class|hierarchy|package|module|project] [-modules=name,...] [-threads=N] [-summary=file] [-report=file]";
+    private static final String MODE_OPTION = "-mode=";
+    private static final String MODULES_OPTION = "-modules=";
+    private static final String THREADS_OPTION = "-threads=";
+    private static final String SUMMARY_OPTION = "-summary=";
+    private static final String REPORT_OPTION = "-report=";
+    private static final int GROUPS_PER_COMMAND = 200;
+
+    private String myProjectPath;
+    private String myActionCommand = IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND;
+    private Set<String> myModuleNames;
+    private int myThreads = Runtime.getRuntime().availableProcessors();
+    private String mySummaryPath;
+    private String myReportPath;
+
+    public String getCommandName()
+    {
+        return COMMAND_NAME;
+    }
+
+    public void premain(String[] args)
+    {
+        boolean valid = true;
+        // args[0] is the command name
+        for(int i = 1; i < args.length; i++)
+        {
+            String arg = args[i];
+            if(arg.startsWith(MODE_OPTION))
+            {
+                myActionCommand = toActionCommand(arg.substring(MODE_OPTION.length()));
+            }
+            else if(arg.startsWith(MODULES_OPTION))
+            {
+                myModuleNames = new HashSet<String>(Arrays.asList(arg.substring(MODULES_OPTION.length()).split(",")));
+            }
+            else if(arg.startsWith(THREADS_OPTION))
+            {
+                try
+                {
+                    myThreads = Math.max(1, Integer.parseInt(arg.substring(THREADS_OPTION.length())));
+                }
+                catch(NumberFormatException ignore)
+                {
+                    valid = false;
+                }
+            }
+            else if(arg.startsWith(SUMMARY_OPTION))
+            {
+                mySummaryPath = arg.substring(SUMMARY_OPTION.length());
+            }
+            else if(arg.startsWith(REPORT_OPTION))
+            {
+                myReportPath = arg.substring(REPORT_OPTION.length());
+            }
+            else if(myProjectPath == null)
+            {
+                myProjectPath = arg;
+            }
+        }
+
+        if(!valid || myProjectPath == null || myActionCommand == null)
+        {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+    }
+
+    private static String toActionCommand(String mode)
+    {
+        String retVal = null;
+        if("class".equals(mode))
+        {
+            retVal = IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND;
+        }
+        else if("hierarchy".equals(mode))
+        {
+            retVal = IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND;
+        }
+        else if("package".equals(mode))
+        {
+            retVal = IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND;
+        }
+        else if("module".equals(mode))
+        {
+            retVal = IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND;
+        }
+        else if("project".equals(mode))
+        {
+            retVal = IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND;
+        }
+        return retVal;
+    }
+
+    public void main(String[] args)
+    {
+        int exitCode = 0;
+        try
+        {
+            Project project = ProjectManagerEx.getInstanceEx().loadAndOpenProject(myProjectPath);
+            if(project == null)
+            {
+                System.err.println("Unable to open project " + myProjectPath);
+                exitCode = 1;
+            }
+            else
+            {
+                DumbService.getInstance(project).waitForSmartMode();
+                if(myReportPath != null)
+                {
+                    LiteralReportExporter exporter = new LiteralReportExporter(project, OutputSinkRegistry.getInstance(ConstantsExtractionInspection.constExtract_outputSinks),
+                                                                               ConstantsExtractionInspection.getRules());
+                    exporter.export(new File(myReportPath));
+                    System.out.println(exporter.getLiteralsExported() + " literals of " + exporter.getFilesExported() + " files written to " + myReportPath);
+                }
+                else
+                {
+                    writeSummary(extract(project));
+                }
+            }
+        }
+        catch(Exception e)
+        {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    private ExtractionSummary extract(final Project project) throws InterruptedException, ExecutionException
+    {
+        ExtractionSummary retVal = new ExtractionSummary();
+        long modificationMillis = 0;
+        final BatchConstantsExtractor extractor = new BatchConstantsExtractor(project, myActionCommand);
+        final OutputSinkRegistry sinks = OutputSinkRegistry.getInstance(ConstantsExtractionInspection.constExtract_outputSinks);
+        final LiteralRuleSet rules = ConstantsExtractionInspection.getRules();
+
+        ExecutorService executor = Executors.newFixedThreadPool(myThreads);
+        try
+        {
+            for(Module module : ModuleManager.getInstance(project).getModules())
+            {
+                if(myModuleNames == null || myModuleNames.contains(module.getName()))
+                {
+                    long start = System.currentTimeMillis();
+                    List<VirtualFile> files = collectJavaFiles(module);
+                    // the counts of the modules before are out of date once their literals are replaced
+                    OccurrenceThreshold threshold = new OccurrenceThreshold(project);
+
+                    ArrayList<Future<Map<SmartPsiElementPointer<PsiLiteralExpression>, String>>> results =
+                        new ArrayList<Future<Map<SmartPsiElementPointer<PsiLiteralExpression>, String>>>();
+                    for(VirtualFile file : files)
+                    {
+                        results.add(executor.submit(new FileAnalysisTask(project, file, sinks, rules, threshold)));
+                    }
+
+                    int candidates = 0;
+                    for(Future<Map<SmartPsiElementPointer<PsiLiteralExpression>, String>> result : results)
+                    {
+                        final Map<SmartPsiElementPointer<PsiLiteralExpression>, String> fileCandidates = result.get();
+                        candidates += fileCandidates.size();
+                        ApplicationManager.getApplication().runReadAction(new Runnable()
+                        {
+                            public void run()
+                            {
+                                for(Map.Entry<SmartPsiElementPointer<PsiLiteralExpression>, String> candidate : fileCandidates.entrySet())
+                                {
+                                    PsiLiteralExpression literal = candidate.getKey().getElement();
+                                    if(literal != null)
+                                    {
+                                        extractor.addLiteral(literal, candidate.getValue());
+                                    }
+                                }
+                            }
+                        });
+                    }
+
+                    retVal.addModule(module.getName(), files.size(), candidates, System.currentTimeMillis() - start);
+
+                    // the modules analyzed later see the constants written for this one
+                    start = System.currentTimeMillis();
+                    extractor.runHeadless(GROUPS_PER_COMMAND);
+                    ApplicationManager.getApplication().invokeAndWait(new Runnable()
+                    {
+                        public void run()
+                        {
+                            FileDocumentManager.getInstance().saveAllDocuments();
+                        }
+                    }, ModalityState.NON_MODAL);
+                    modificationMillis += System.currentTimeMillis() - start;
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        long start = System.currentTimeMillis();
+        ApplicationManager.getApplication().invokeAndWait(new Runnable()
+        {
+            public void run()
+            {
+                project.save();
+            }
+        }, ModalityState.NON_MODAL);
+        modificationMillis += System.currentTimeMillis() - start;
+        retVal.setModification(extractor.getGroupCount(), extractor.getConstantsCreated(), extractor.getFilesTouched(), modificationMillis);
+
+        return retVal;
+    }
+
+    private static List<VirtualFile> collectJavaFiles(Module module)
+    {
+        final ArrayList<VirtualFile> retVal = new ArrayList<VirtualFile>();
+        final ModuleFileIndex fileIndex = ModuleRootManager.getInstance(module).getFileIndex();
+        fileIndex.iterateContent(new ContentIterator()
+        {
+            public boolean processFile(VirtualFile fileOrDir)
+            {
+                if(!fileOrDir.isDirectory() && fileOrDir.getFileType() == StdFileTypes.JAVA && fileIndex.isInSourceContent(fileOrDir))
+                {
+                    retVal.add(fileOrDir);
+                }
+                return true;
+            }
+        });
+        return retVal;
+    }
+
+    private void writeSummary(ExtractionSummary summary) throws IOException
+    {
+        if(mySummaryPath != null)
+        {
+            PrintWriter writer = new PrintWriter(new FileWriter(mySummaryPath));
+            try
+            {
+                summary.write(writer);
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        else
+        {
+            summary.write(new PrintWriter(System.out));
+        }
+    }
+
+    /**
+     * Analyzes one file in its own read action and hands back pointers to its candidates with their suggested names,
+     * the PSI may be rebuilt before they are added to the extraction.
+     */
+    private static class FileAnalysisTask implements Callable<Map<SmartPsiElementPointer<PsiLiteralExpression>, String>>
+    {
+        private final Project myProject;
+        private final VirtualFile myFile;
+        private final OutputSinkRegistry mySinks;
+        private final LiteralRuleSet myRules;
+        private final OccurrenceThreshold myThreshold;
+
+        private FileAnalysisTask(Project project, VirtualFile file, OutputSinkRegistry sinks, LiteralRuleSet rules, OccurrenceThreshold threshold)
+        {
+            myProject = project;
+            myFile = file;
+            mySinks = sinks;
+            myRules = rules;
+            myThreshold = threshold;
+        }
+
+        public Map<SmartPsiElementPointer<PsiLiteralExpression>, String> call()
+        {
+            return ApplicationManager.getApplication().runReadAction(new Computable<Map<SmartPsiElementPointer<PsiLiteralExpression>, String>>()
+            {
+                public Map<SmartPsiElementPointer<PsiLiteralExpression>, String> compute()
+                {
+                    HashMap<SmartPsiElementPointer<PsiLiteralExpression>, String> retVal = new HashMap<SmartPsiElementPointer<PsiLiteralExpression>, String>();
+                    PsiFile psiFile = PsiManager.getInstance(myProject).findFile(myFile);
+                    if(psiFile instanceof PsiJavaFile)
+                    {
+                        SmartPointerManager pointerManager = SmartPointerManager.getInstance(myProject);
+                        FileLiteralAnalysis analysis = FileLiteralAnalysis.analyze(psiFile, mySinks, myRules);
+                        for(PsiLiteralExpression candidate : analysis.getCandidates())
+                        {
+                            if(myThreshold.isMet(candidate, analysis))
+                            {
+                                retVal.put(pointerManager.createSmartPsiElementPointer(candidate), analysis.getLiteralInfo(candidate).getSuggestedName());
+                            }
+                        }
+                    }
+                    return retVal;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.batch;
+
+import auto.core.PhaseMetrics;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What a headless extraction run did, written out as plain text once the run is over.
+ */
+class ExtractionSummary
+{
+    private final PhaseMetrics.Snapshot myMetricsStart = PhaseMetrics.getInstance().snapshot();
+    private final List<ModuleEntry> myModules = new ArrayList<ModuleEntry>();
+    private int myGroups;
+    private int myConstantsCreated;
+    private int myFilesTouched;
+    private long myModificationMillis;
+
+    void addModule(String moduleName, int filesAnalyzed, int candidates, long analysisMillis)
+    {
+        myModules.add(new ModuleEntry(moduleName, filesAnalyzed, candidates, analysisMillis));
+    }
+
+    void setModification(int groups, int constantsCreated, int filesTouched, long modificationMillis)
+    {
+        myGroups = groups;
+        myConstantsCreated = constantsCreated;
+        myFilesTouched = filesTouched;
+        myModificationMillis = modificationMillis;
+    }
+
+    void write(PrintWriter writer)
+    {
+        int totalFiles = 0;
+        int totalCandidates = 0;
+        long totalAnalysisMillis = 0;
+
+        writer.println("module\tfiles analyzed\tcandidate literals\tanalysis ms");
+        for(ModuleEntry module : myModules)
+        {
+            writer.println(module.myName + "\t" + module.myFilesAnalyzed + "\t" + module.myCandidates + "\t" + module.myAnalysisMillis);
+            totalFiles += module.myFilesAnalyzed;
+            totalCandidates += module.myCandidates;
+            totalAnalysisMillis += module.myAnalysisMillis;
+        }
+        writer.println("total\t" + totalFiles + "\t" + totalCandidates + "\t" + totalAnalysisMillis);
+        writer.println();
+        writer.println("distinct literals: " + myGroups);
+        writer.println("constants created: " + myConstantsCreated);
+        writer.println("files touched: " + myFilesTouched);
+        writer.println("modification ms: " + myModificationMillis);
+        writer.println();
+        writer.println(PhaseMetrics.getInstance().getSummary(myMetricsStart));
+        writer.flush();
+    }
+
+    private static class ModuleEntry
+    {
+        private final String myName;
+        private final int myFilesAnalyzed;
+        private final int myCandidates;
+        private final long myAnalysisMillis;
+
+        private ModuleEntry(String name, int filesAnalyzed, int candidates, long analysisMillis)
+        {
+            myName = name;
+            myFilesAnalyzed = filesAnalyzed;
+            myCandidates = candidates;
+            myAnalysisMillis = analysisMillis;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the text of a literal into a constant name. Every special character is mapped in a single pass over the
+ * text, and the names of recently seen literals are kept in a small LRU cache keyed on the literal text and the
+ * name of the parameter it is passed to.
+ */
+public final class ConstantNameGenerator implements ConstantNamer
+{
+    public static final String DEFAULT_FIELD_NAME = "DEFAULT_FIELD_NAME";
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final Pattern HTTP_LITERAL = Pattern.compile(".http.*");
+    private static final ConstantNameGenerator INSTANCE = new ConstantNameGenerator(DEFAULT_CACHE_SIZE);
+
+    private final Map<String, String> myCache;
+
+    public ConstantNameGenerator(final int cacheSize)
+    {
+        myCache = new LinkedHashMap<String, String>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+            {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static ConstantNameGenerator getInstance()
+    {
+        return INSTANCE;
+    }
+
+    public String nameForArgument(String parameterName, String literalText)
+    {
+        String key = parameterName + KEY_SEPARATOR + literalText;
+        String retVal = getCached(key);
+        if(retVal == null)
+        {
+            String text = literalText;
+            if(HTTP_LITERAL.matcher(text).matches())
+            {
+                int lastIndex = text.lastIndexOf("/");
+                text = text.substring(lastIndex + 1, text.length());
+            }
+            retVal = cleanSpecialCharacters(parameterName + "_" + text);
+            putCached(key, retVal);
+        }
+        return retVal;
+    }
+
+    public String nameForLiteral(String literalText, String numericTypeName)
+    {
+        String key = (numericTypeName != null ? numericTypeName : "") + KEY_SEPARATOR + KEY_SEPARATOR + literalText;
+        String retVal = getCached(key);
+        if(retVal == null)
+        {
+            if(numericTypeName == null)
+            {
+                retVal = cleanSpecialCharacters(literalText);
+                if(retVal.length() == 0)
+                {
+                    retVal = spellSpecialCharacters(literalText);
+                }
+            }
+            else
+            {
+                retVal = numericTypeName.toUpperCase() + "_" + literalText;
+            }
+            putCached(key, retVal);
+        }
+        return retVal;
+    }
+
+    public String nameForPackageHolder(String packageName)
+    {
+        String retVal = packageName;
+        int lastIndexOf = packageName.lastIndexOf(".");
+        if(lastIndexOf > 0)
+        {
+            retVal = packageName.substring(lastIndexOf + 1, packageName.length());
+        }
+
+        if(retVal.length() > 0)
+        {
+            retVal = retVal.substring(0, 1).toUpperCase() + retVal.substring(1, retVal.length());
+        }
+        return retVal;
+    }
+
+    private String getCached(String key)
+    {
+        synchronized(myCache)
+        {
+            return myCache.get(key);
+        }
+    }
+
+    private void putCached(String key, String name)
+    {
+        synchronized(myCache)
+        {
+            myCache.put(key, name);
+        }
+    }
+
+    /**
+     * Maps the characters that can't be part of an identifier to words or underscores, drops the rest of them
+     * and upper cases the result. Returns an empty string when nothing is left.
+     */
+    public static String cleanSpecialCharacters(String text)
+    {
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch(c)
+            {
+                case ';':
+                    builder.append("SEMICOLON");
+                    break;
+                case ',':
+                    builder.append("COMMA");
+                    break;
+                case '\'':
+                    builder.append("SINGLE_QUOTE");
+                    break;
+                case '%':
+                    builder.append("_PERCENT");
+                    break;
+                case ' ':
+                case '.':
+                case '-':
+                case '/':
+                    builder.append('_');
+                    break;
+                case '\\':
+                case '"':
+                case '=':
+                case '*':
+                case '(':
+                case ')':
+                case ':':
+                case '#':
+                case '$':
+                case '@':
+                case '!':
+                case '^':
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+
+        String retVal = builder.length() > 0 && builder.charAt(0) == '_' ? builder.substring(1) : builder.toString();
+        if(retVal.length() > 0)
+        {
+            if(Character.isDigit(retVal.charAt(0)))
+            {
+                retVal = "CONST_" + retVal;
+            }
+            retVal = retVal.trim();
+            retVal = retVal.toUpperCase();
+        }
+        return retVal;
+    }
+
+    /**
+     * Fallback for literals made of nothing but special characters, e.g. "(" or "=".
+     */
+    private static String spellSpecialCharacters(String text)
+    {
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        for(int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch(c)
+            {
+                case '"':
+                    break;
+                case '\\':
+                    builder.append("SLASH");
+                    break;
+                case '=':
+                    builder.append("EQUALS");
+                    break;
+                case '*':
+                    builder.append("ASTERISK");
+                    break;
+                case '(':
+                    builder.append("OPEN_PARENTHESIS");
+                    break;
+                case ')':
+                    builder.append("CLOSE_PARENTHESIS");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+        return builder.toString();
+    }
+}
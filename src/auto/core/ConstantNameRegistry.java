@@ -0,0 +1,59 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * The field names taken in one destination class, seeded once with its declared and inherited fields and kept up
+ * to date as constants are added to it. A taken name gets the suffix _AUTO_CREATED, then _AUTO_CREATED_2,
+ * _AUTO_CREATED_3 and so on, so the same run always produces the same names.
+ */
+public class ConstantNameRegistry
+{
+    public static final String COLLISION_SUFFIX = "_AUTO_CREATED";
+
+    private final HashSet<String> myNames;
+
+    public ConstantNameRegistry(Collection<String> takenNames)
+    {
+        myNames = new HashSet<String>(takenNames);
+    }
+
+    public boolean isTaken(String name)
+    {
+        return myNames.contains(name);
+    }
+
+    /**
+     * @return the name, or the first free name with a collision suffix, which is taken from now on
+     */
+    public String reserve(String name)
+    {
+        String retVal = name;
+        if(myNames.contains(retVal))
+        {
+            retVal = name + COLLISION_SUFFIX;
+            for(int i = 2; myNames.contains(retVal); i++)
+            {
+                retVal = name + COLLISION_SUFFIX + "_" + i;
+            }
+        }
+        myNames.add(retVal);
+        return retVal;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+/**
+ * Names constants and the classes holding them, from the text of the source only.
+ */
+public interface ConstantNamer
+{
+    /**
+     * @param parameterName the upper cased name of the parameter the literal is passed to
+     * @param literalText the literal as written in the source, quotes included
+     */
+    String nameForArgument(String parameterName, String literalText);
+
+    /**
+     * @param literalText the literal as written in the source, quotes included
+     * @param numericTypeName the presentable name of the literal's type for numeric literals, null for everything else
+     */
+    String nameForLiteral(String literalText, String numericTypeName);
+
+    /**
+     * @param packageName the short name of the package that gets the constants holder
+     * @return the name of the holder without its postfix
+     */
+    String nameForPackageHolder(String packageName);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+/**
+ * The text based part of the inspection's filter chain: empty strings, the null keyword and strings containing
+ * a space, which are labels or queries rather than constants.
+ */
+public class DefaultLiteralFilter implements LiteralFilter
+{
+    private static final String EMPTY_STRING_LITERAL = "\"\"";
+    private static final String NULL_KEYWORD = "null";
+    private static final DefaultLiteralFilter INSTANCE = new DefaultLiteralFilter();
+
+    public static DefaultLiteralFilter getInstance()
+    {
+        return INSTANCE;
+    }
+
+    public boolean isExcluded(String literalText, char kind)
+    {
+        return isEmptyString(literalText) || isNullKeyword(literalText) || isLabelOrQuery(literalText, kind);
+    }
+
+    public static boolean isEmptyString(String literalText)
+    {
+        return literalText.equals(EMPTY_STRING_LITERAL);
+    }
+
+    public static boolean isNullKeyword(String literalText)
+    {
+        return literalText.equals(NULL_KEYWORD);
+    }
+
+    public static boolean isLabelOrQuery(String literalText, char kind)
+    {
+        return kind == LiteralValueNormalizer.STRING_KIND && literalText.indexOf(' ') > -1;
+    }
+}
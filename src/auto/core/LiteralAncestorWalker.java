@@ -0,0 +1,141 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+/**
+ * Builds the {@link LiteralContext} of a literal walking its ancestors only once. The tree is reached through the
+ * few methods a subclass implements, so the walk itself doesn't depend on the PSI.
+ *
+ * @param <E> the elements of the tree
+ */
+public abstract class LiteralAncestorWalker<E>
+{
+    public static final int OTHER = 0;
+    public static final int FILE = 1;
+    public static final int METHOD_CALL = 2;
+    public static final int ASSIGNMENT = 3;
+    public static final int LOCAL_VARIABLE = 4;
+    public static final int FIELD = 5;
+    public static final int ANNOTATION = 6;
+    public static final int RETURN = 7;
+    public static final int DECLARATION_STATEMENT = 8;
+
+    public static final int PLUS = 1;
+    public static final int QUEST = 1 << 1;
+    public static final int COLON = 1 << 2;
+
+    /**
+     * @return the parent of the element, null at the root
+     */
+    protected abstract E getParent(E element);
+
+    /**
+     * @return one of the node type constants, {@link #OTHER} for everything the filters don't care about
+     */
+    protected abstract int getNodeType(E element);
+
+    /**
+     * @return the {@link #PLUS}, {@link #QUEST} and {@link #COLON} tokens among the direct children of the element
+     */
+    protected abstract int getOperators(E element);
+
+    /**
+     * @return the name of the called method followed by the qualified names of the classes declaring it, empty if
+     * the call doesn't resolve
+     */
+    protected abstract String[] getCallTargets(E methodCall);
+
+    public LiteralContext classify(E literal, char kind, OutputSinkRegistry sinks)
+    {
+        E parent = getParent(literal);
+        int flags = parent != null ? classifyParent(parent) : 0;
+
+        boolean callFound = false;
+        E ancestor = parent;
+        int nodeType;
+        while(ancestor != null && (nodeType = getNodeType(ancestor)) != FILE)
+        {
+            switch(nodeType)
+            {
+                case METHOD_CALL:
+                    // only the innermost call decides whether the literal is printed
+                    if(!callFound && isOutputSinkCall(ancestor, sinks))
+                    {
+                        flags |= LiteralContext.IN_PRINT_CALL;
+                    }
+                    callFound = true;
+                    break;
+                case ASSIGNMENT:
+                    flags |= LiteralContext.IN_ASSIGNMENT;
+                    break;
+                case LOCAL_VARIABLE:
+                    flags |= LiteralContext.IN_LOCAL_VARIABLE;
+                    break;
+                case FIELD:
+                    flags |= LiteralContext.IN_FIELD;
+                    break;
+                case ANNOTATION:
+                    flags |= LiteralContext.IN_ANNOTATION;
+                    break;
+                default:
+                    break;
+            }
+            ancestor = getParent(ancestor);
+        }
+
+        return new LiteralContext(kind, flags);
+    }
+
+    private int classifyParent(E parent)
+    {
+        int retVal = 0;
+        int nodeType = getNodeType(parent);
+        if(nodeType == LOCAL_VARIABLE)
+        {
+            E grandParent = getParent(parent);
+            if(grandParent != null && getNodeType(grandParent) == DECLARATION_STATEMENT)
+            {
+                retVal |= LiteralContext.LOCAL_DECLARATION;
+            }
+        }
+        else if(nodeType == RETURN)
+        {
+            retVal |= LiteralContext.RETURN;
+        }
+
+        int operators = getOperators(parent);
+        if((operators & PLUS) != 0)
+        {
+            retVal |= LiteralContext.CONCATENATION;
+        }
+        if((operators & (QUEST | COLON)) == (QUEST | COLON))
+        {
+            retVal |= LiteralContext.TERNARY;
+        }
+        return retVal;
+    }
+
+    private boolean isOutputSinkCall(E methodCall, OutputSinkRegistry sinks)
+    {
+        boolean retVal = false;
+        String[] targets = getCallTargets(methodCall);
+        for(int i = 1; i < targets.length && !retVal; i++)
+        {
+            retVal = sinks.isSink(targets[i], targets[0]);
+        }
+        return retVal;
+    }
+}
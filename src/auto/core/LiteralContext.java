@@ -0,0 +1,102 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+/**
+ * Where a literal sits in the source, collected in one walk over its ancestors. All filter decisions of the
+ * inspection that depend on the surrounding code are made from this record.
+ */
+public final class LiteralContext
+{
+    public static final int IN_ANNOTATION = 1;
+    public static final int IN_FIELD = 1 << 1;
+    public static final int IN_PRINT_CALL = 1 << 2;
+    public static final int LOCAL_DECLARATION = 1 << 3;
+    public static final int IN_LOCAL_VARIABLE = 1 << 4;
+    public static final int RETURN = 1 << 5;
+    public static final int IN_ASSIGNMENT = 1 << 6;
+    public static final int CONCATENATION = 1 << 7;
+    public static final int TERNARY = 1 << 8;
+
+    private static final String[] FLAG_NAMES = {"annotation", "field", "print call", "local declaration", "local variable", "return",
+                                                "assignment", "concatenation", "ternary"};
+
+    private final char myKind;
+    private final int myFlags;
+
+    /**
+     * @param kind the {@link LiteralValueNormalizer} kind of the literal, 0 for the null keyword
+     */
+    public LiteralContext(char kind, int flags)
+    {
+        myKind = kind;
+        myFlags = flags;
+    }
+
+    public char getKind()
+    {
+        return myKind;
+    }
+
+    public int getFlags()
+    {
+        return myFlags;
+    }
+
+    public boolean is(int flag)
+    {
+        return (myFlags & flag) != 0;
+    }
+
+    /**
+     * Literals printed out, declared straight into a local variable, used in annotations, string literals glued to
+     * something with + or picked by a ternary and booleans that are assigned or returned aren't worth a constant.
+     */
+    public boolean isExcluded()
+    {
+        return is(IN_PRINT_CALL | LOCAL_DECLARATION | IN_ANNOTATION)
+            || (myKind == LiteralValueNormalizer.STRING_KIND && is(CONCATENATION | TERNARY))
+            || (myKind == LiteralValueNormalizer.BOOLEAN_KIND && is(IN_ASSIGNMENT | IN_LOCAL_VARIABLE | RETURN));
+    }
+
+    /**
+     * @return the names of the flags that are set, separated by '|', for reports
+     */
+    public String describeFlags()
+    {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < FLAG_NAMES.length; i++)
+        {
+            if(is(1 << i))
+            {
+                if(builder.length() > 0)
+                {
+                    builder.append('|');
+                }
+                builder.append(FLAG_NAMES[i]);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Literals that already initialize a field are left alone.
+     */
+    public boolean isInField()
+    {
+        return is(IN_FIELD);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The user configurable rules deciding which literals are reported, compiled once from the inspection options and
+ * reused until they change:
+ * <ul>
+ * <li>ignored values, written like in the source and separated by commas: <code>0, 1, -1, "", 'a'</code>, matched
+ * on their value so <code>0x1</code> is ignored along with <code>1</code></li>
+ * <li>an allow pattern, literals whose text matches it are never excluded by the other rules</li>
+ * <li>a deny pattern, literals whose text (quotes included) matches it are excluded</li>
+ * <li>type policies, <code>type:ignore</code> or <code>type:N</code> separated by commas, where type is one of
+ * string, char, int, long, float, double or boolean and N the minimum number of occurrences for that type; the type
+ * is the one of the literal, so <code>int:ignore</code> leaves <code>1L</code> and <code>long:2</code> leaves
+ * <code>1</code> alone</li>
+ * <li>the minimum number of occurrences of a value within the occurrence scope before its literals are reported</li>
+ * </ul>
+ */
+public final class LiteralRuleSet implements LiteralFilter
+{
+    public static final String DEFAULT_IGNORED_VALUES = "";
+    public static final String DEFAULT_TYPE_POLICIES = "";
+    public static final int DEFAULT_MIN_OCCURRENCES = 1;
+    private static final String IGNORE_POLICY = "ignore";
+    private static final String[] TYPE_NAMES = {"string", "char", "int", "long", "float", "double", "boolean"};
+    private static final char POLICY_SEPARATOR = ':';
+    private static final char MINUS = '-';
+
+    public enum OccurrenceScope
+    {
+        FILE, MODULE, PROJECT
+    }
+
+    private static volatile LiteralRuleSet ourLastRuleSet = new LiteralRuleSet(DEFAULT_IGNORED_VALUES, "", "", DEFAULT_TYPE_POLICIES,
+                                                                                 DEFAULT_MIN_OCCURRENCES, OccurrenceScope.FILE.name());
+
+    private final String mySpecification;
+    private final HashSet<String> myIgnoredValues = new HashSet<String>();
+    private final Pattern myAllowPattern;
+    private final Pattern myDenyPattern;
+    private final HashSet<String> myIgnoredTypes = new HashSet<String>();
+    private final HashMap<String, Integer> myMinOccurrencesByType = new HashMap<String, Integer>();
+    private final int myMinOccurrences;
+    private final OccurrenceScope myOccurrenceScope;
+
+    private LiteralRuleSet(String ignoredValues, String allowPattern, String denyPattern, String typePolicies, int minOccurrences,
+                           String occurrenceScope)
+    {
+        mySpecification = toSpecification(ignoredValues, allowPattern, denyPattern, typePolicies, minOccurrences, occurrenceScope);
+        for(String value : split(ignoredValues))
+        {
+            boolean isNegative = value.length() > 1 && value.charAt(0) == MINUS;
+            String text = isNegative ? value.substring(1).trim() : value;
+            String key = LiteralValueNormalizer.normalize(getKind(text), text);
+            if(key != null)
+            {
+                myIgnoredValues.add(isNegative ? MINUS + key : key);
+            }
+        }
+        myAllowPattern = compile(allowPattern);
+        myDenyPattern = compile(denyPattern);
+        for(String policy : split(typePolicies))
+        {
+            int separator = policy.indexOf(POLICY_SEPARATOR);
+            String type = separator > 0 ? toTypeName(policy.substring(0, separator).trim()) : null;
+            if(type != null)
+            {
+                String setting = policy.substring(separator + 1).trim();
+                if(IGNORE_POLICY.equalsIgnoreCase(setting))
+                {
+                    myIgnoredTypes.add(type);
+                }
+                else
+                {
+                    try
+                    {
+                        myMinOccurrencesByType.put(type, Integer.parseInt(setting));
+                    }
+                    catch(NumberFormatException ignore)
+                    {
+                        // malformed policy - the type keeps the default minimum
+                    }
+                }
+            }
+        }
+        myMinOccurrences = Math.max(1, minOccurrences);
+        myOccurrenceScope = toOccurrenceScope(occurrenceScope);
+    }
+
+    /**
+     * Compiles the rules, reusing the rule set of the previous call when none of the options changed.
+     */
+    public static LiteralRuleSet getInstance(String ignoredValues, String allowPattern, String denyPattern, String typePolicies, int minOccurrences,
+                                             String occurrenceScope)
+    {
+        LiteralRuleSet retVal = ourLastRuleSet;
+        if(!retVal.mySpecification.equals(toSpecification(ignoredValues, allowPattern, denyPattern, typePolicies, minOccurrences, occurrenceScope)))
+        {
+            retVal = new LiteralRuleSet(ignoredValues, allowPattern, denyPattern, typePolicies, minOccurrences, occurrenceScope);
+            ourLastRuleSet = retVal;
+        }
+        return retVal;
+    }
+
+    private static String toSpecification(String ignoredValues, String allowPattern, String denyPattern, String typePolicies, int minOccurrences,
+                                          String occurrenceScope)
+    {
+        return ignoredValues + '\n' + allowPattern + '\n' + denyPattern + '\n' + typePolicies + '\n' + minOccurrences + '\n' + occurrenceScope;
+    }
+
+    public boolean isExcluded(String literalText, char kind)
+    {
+        return isExcluded(literalText, kind, false);
+    }
+
+    /**
+     * @param isNegated true if the literal is the operand of a unary minus, which the ignored values take into account
+     */
+    public boolean isExcluded(String literalText, char kind, boolean isNegated)
+    {
+        boolean retVal = false;
+        if(myAllowPattern == null || !myAllowPattern.matcher(literalText).matches())
+        {
+            String key = LiteralValueNormalizer.normalize(kind, literalText);
+            retVal = myIgnoredTypes.contains(getTypeName(literalText, kind))
+                     || (key != null && myIgnoredValues.contains(isNegated ? MINUS + key : key))
+                     || (myDenyPattern != null && myDenyPattern.matcher(literalText).matches());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the number of times the value of the literal has to occur in the occurrence scope before it is reported
+     */
+    public int getMinOccurrences(String literalText, char kind)
+    {
+        Integer retVal = myMinOccurrencesByType.get(getTypeName(literalText, kind));
+        return retVal != null ? Math.max(1, retVal) : myMinOccurrences;
+    }
+
+    public OccurrenceScope getOccurrenceScope()
+    {
+        return myOccurrenceScope;
+    }
+
+    private static String[] split(String list)
+    {
+        String trimmed = list != null ? list.trim() : "";
+        return trimmed.length() > 0 ? trimmed.split("\\s*,\\s*") : new String[0];
+    }
+
+    private static Pattern compile(String pattern)
+    {
+        Pattern retVal = null;
+        if(pattern != null && pattern.trim().length() > 0)
+        {
+            try
+            {
+                retVal = Pattern.compile(pattern.trim());
+            }
+            catch(PatternSyntaxException ignore)
+            {
+                // still being typed in the options - no pattern until it compiles
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the kind of a value written like in the source
+     */
+    private static char getKind(String text)
+    {
+        char retVal = LiteralValueNormalizer.INTEGRAL_KIND;
+        char first = text.length() > 0 ? text.charAt(0) : 0;
+        String lowerCase = text.toLowerCase();
+        if(first == '"')
+        {
+            retVal = LiteralValueNormalizer.STRING_KIND;
+        }
+        else if(first == '\'')
+        {
+            retVal = LiteralValueNormalizer.CHARACTER_KIND;
+        }
+        else if(lowerCase.equals("true") || lowerCase.equals("false"))
+        {
+            retVal = LiteralValueNormalizer.BOOLEAN_KIND;
+        }
+        else if(!lowerCase.startsWith("0x")
+                && (lowerCase.indexOf('.') > -1 || lowerCase.indexOf('e') > -1 || lowerCase.endsWith("f") || lowerCase.endsWith("d")))
+        {
+            retVal = LiteralValueNormalizer.FLOATING_KIND;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the type of the literal, told apart within its kind by the suffix: int or long, float or double; null
+     * for literals of no kind (null keyword)
+     */
+    static String getTypeName(String literalText, char kind)
+    {
+        String retVal = null;
+        char suffix = literalText.length() > 0 ? Character.toLowerCase(literalText.charAt(literalText.length() - 1)) : 0;
+        switch(kind)
+        {
+            case LiteralValueNormalizer.STRING_KIND:
+                retVal = "string";
+                break;
+            case LiteralValueNormalizer.CHARACTER_KIND:
+                retVal = "char";
+                break;
+            case LiteralValueNormalizer.BOOLEAN_KIND:
+                retVal = "boolean";
+                break;
+            case LiteralValueNormalizer.INTEGRAL_KIND:
+                retVal = suffix == 'l' ? "long" : "int";
+                break;
+            case LiteralValueNormalizer.FLOATING_KIND:
+                retVal = suffix == 'f' ? "float" : "double";
+                break;
+            default:
+                break;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the type name of a policy in lower case, null if it is no literal type
+     */
+    private static String toTypeName(String type)
+    {
+        String retVal = null;
+        for(String typeName : TYPE_NAMES)
+        {
+            if(typeName.equalsIgnoreCase(type))
+            {
+                retVal = typeName;
+            }
+        }
+        return retVal;
+    }
+
+    private static OccurrenceScope toOccurrenceScope(String occurrenceScope)
+    {
+        OccurrenceScope retVal = OccurrenceScope.FILE;
+        for(OccurrenceScope scope : OccurrenceScope.values())
+        {
+            if(scope.name().equalsIgnoreCase(occurrenceScope))
+            {
+                retVal = scope;
+            }
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import java.math.BigInteger;
+
+/**
+ * Turns the source text of a literal into the key it is stored under in the {@code auto.index.LiteralValueIndex}.
+ * Numeric literals are keyed on their value so that 0x10, 16, 020 and 1_6 all end up in the same bucket;
+ * strings, chars and booleans are keyed on their text.
+ */
+public final class LiteralValueNormalizer
+{
+    public static final char INTEGRAL_KIND = 'I';
+    public static final char FLOATING_KIND = 'F';
+    public static final char STRING_KIND = 'S';
+    public static final char CHARACTER_KIND = 'C';
+    public static final char BOOLEAN_KIND = 'B';
+    private static final String KIND_SEPARATOR = ":";
+
+    private LiteralValueNormalizer()
+    {
+    }
+
+    public static String normalize(char kind, String text)
+    {
+        String retVal = null;
+        if(text != null && text.length() > 0)
+        {
+            switch(kind)
+            {
+                case INTEGRAL_KIND:
+                    retVal = normalizeIntegral(text);
+                    break;
+                case FLOATING_KIND:
+                    retVal = normalizeFloating(text);
+                    break;
+                case STRING_KIND:
+                case CHARACTER_KIND:
+                case BOOLEAN_KIND:
+                    retVal = kind + KIND_SEPARATOR + text;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return retVal;
+    }
+
+    private static String normalizeIntegral(String text)
+    {
+        String digits = stripUnderscores(text);
+        boolean isLong = false;
+        char last = digits.charAt(digits.length() - 1);
+        if(last == 'l' || last == 'L')
+        {
+            isLong = true;
+            digits = digits.substring(0, digits.length() - 1);
+        }
+
+        int radix = 10;
+        if(digits.startsWith("0x") || digits.startsWith("0X"))
+        {
+            radix = 16;
+            digits = digits.substring(2);
+        }
+        else if(digits.startsWith("0b") || digits.startsWith("0B"))
+        {
+            radix = 2;
+            digits = digits.substring(2);
+        }
+        else if(digits.length() > 1 && digits.charAt(0) == '0')
+        {
+            radix = 8;
+            digits = digits.substring(1);
+        }
+
+        String retVal;
+        try
+        {
+            BigInteger value = new BigInteger(digits, radix);
+            // hex, octal and binary int literals wrap around, 0xFFFFFFFF is the int -1
+            long longValue = isLong || radix == 10 ? value.longValue() : value.intValue();
+            retVal = INTEGRAL_KIND + KIND_SEPARATOR + longValue;
+        }
+        catch(NumberFormatException ignore)
+        {
+            // malformed literal (still being typed) - fall back to its text
+            retVal = INTEGRAL_KIND + KIND_SEPARATOR + text;
+        }
+        return retVal;
+    }
+
+    private static String normalizeFloating(String text)
+    {
+        String retVal;
+        try
+        {
+            retVal = FLOATING_KIND + KIND_SEPARATOR + Double.valueOf(stripUnderscores(text));
+        }
+        catch(NumberFormatException ignore)
+        {
+            retVal = FLOATING_KIND + KIND_SEPARATOR + text;
+        }
+        return retVal;
+    }
+
+    private static String stripUnderscores(String text)
+    {
+        String retVal = text;
+        if(text.indexOf('_') > -1)
+        {
+            StringBuilder builder = new StringBuilder(text.length());
+            for(int i = 0; i < text.length(); i++)
+            {
+                char c = text.charAt(i);
+                if(c != '_')
+                {
+                    builder.append(c);
+                }
+            }
+            retVal = builder.toString();
+        }
+        return retVal;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The methods whose arguments are printed or logged rather than used, like PrintStream.println or the
+ * logging frameworks. Literals passed to them don't get constants.
+ * <p>
+ * Entries are written as <code>fully.qualified.Class#method</code>, separated by commas or white space.
+ * A method name ending with <code>*</code> matches every method starting with the rest of the name.
+ */
+public final class OutputSinkRegistry
+{
+    public static final String DEFAULT_SINKS =
+        "java.io.PrintStream#print*, java.io.PrintStream#format, java.io.PrintWriter#print*, java.io.PrintWriter#format, "
+        + "java.lang.StringBuilder#append, java.lang.StringBuffer#append, "
+        + "java.util.logging.Logger#log*, java.util.logging.Logger#severe, java.util.logging.Logger#warning, "
+        + "java.util.logging.Logger#info, java.util.logging.Logger#config, java.util.logging.Logger#fine*, "
+        + "org.slf4j.Logger#trace, org.slf4j.Logger#debug, org.slf4j.Logger#info, org.slf4j.Logger#warn, org.slf4j.Logger#error, "
+        + "org.apache.log4j.Category#debug, org.apache.log4j.Category#info, org.apache.log4j.Category#warn, "
+        + "org.apache.log4j.Category#error, org.apache.log4j.Category#fatal, org.apache.log4j.Category#log, org.apache.log4j.Logger#trace, "
+        + "org.apache.logging.log4j.Logger#trace, org.apache.logging.log4j.Logger#debug, org.apache.logging.log4j.Logger#info, "
+        + "org.apache.logging.log4j.Logger#warn, org.apache.logging.log4j.Logger#error, org.apache.logging.log4j.Logger#fatal, "
+        + "org.apache.logging.log4j.Logger#log, "
+        + "org.apache.commons.logging.Log#trace, org.apache.commons.logging.Log#debug, org.apache.commons.logging.Log#info, "
+        + "org.apache.commons.logging.Log#warn, org.apache.commons.logging.Log#error, org.apache.commons.logging.Log#fatal";
+    private static final char METHOD_SEPARATOR = '#';
+    private static final String WILDCARD = "*";
+
+    private static volatile OutputSinkRegistry ourLastRegistry = new OutputSinkRegistry(DEFAULT_SINKS);
+
+    private final String mySpecification;
+    private final HashMap<String, HashSet<String>> myMethodsByClass = new HashMap<String, HashSet<String>>();
+    private final HashMap<String, List<String>> myPrefixesByClass = new HashMap<String, List<String>>();
+
+    private OutputSinkRegistry(String specification)
+    {
+        mySpecification = specification;
+        for(String entry : specification.split("[,\\s]+"))
+        {
+            int separator = entry.indexOf(METHOD_SEPARATOR);
+            if(separator > 0 && separator < entry.length() - 1)
+            {
+                String className = entry.substring(0, separator);
+                String methodName = entry.substring(separator + 1);
+                if(methodName.endsWith(WILDCARD))
+                {
+                    List<String> prefixes = myPrefixesByClass.get(className);
+                    if(prefixes == null)
+                    {
+                        prefixes = new ArrayList<String>();
+                        myPrefixesByClass.put(className, prefixes);
+                    }
+                    prefixes.add(methodName.substring(0, methodName.length() - 1));
+                }
+                else
+                {
+                    HashSet<String> methods = myMethodsByClass.get(className);
+                    if(methods == null)
+                    {
+                        methods = new HashSet<String>();
+                        myMethodsByClass.put(className, methods);
+                    }
+                    methods.add(methodName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses the specification, reusing the registry of the previous call when the specification didn't change.
+     */
+    public static OutputSinkRegistry getInstance(String specification)
+    {
+        OutputSinkRegistry retVal = ourLastRegistry;
+        String spec = specification != null ? specification : DEFAULT_SINKS;
+        if(!retVal.mySpecification.equals(spec))
+        {
+            retVal = new OutputSinkRegistry(spec);
+            ourLastRegistry = retVal;
+        }
+        return retVal;
+    }
+
+    public boolean isSink(String className, String methodName)
+    {
+        boolean retVal = false;
+        HashSet<String> methods = myMethodsByClass.get(className);
+        if(methods != null)
+        {
+            retVal = methods.contains(methodName);
+        }
+        if(!retVal)
+        {
+            List<String> prefixes = myPrefixesByClass.get(className);
+            if(prefixes != null)
+            {
+                for(String prefix : prefixes)
+                {
+                    if(methodName.startsWith(prefix))
+                    {
+                        retVal = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return retVal;
+    }
+}
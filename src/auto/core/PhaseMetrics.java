@@ -0,0 +1,278 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts and times the phases of the inspection and the refactoring since startup, so that a slow extraction can
+ * be told apart into filtering, searching, creating, reformatting, replacing and importing. Every phase keeps a
+ * histogram of its latencies in power of two microsecond buckets; recording is lock free and cheap enough for
+ * the inspection's per literal path. An operation takes a {@link #snapshot()} when it starts and reports only what
+ * was recorded since; the phases never nest, each one times its own work only. The requests for the cached analysis
+ * of a file are counted too, to tell how often highlighting finds it up to date.
+ * <p/>
+ * The summary goes to the log rather than to JFR: the plugin runs in IDEs on Java 6, and the jdk.jfr event API only
+ * exists from Java 9 on (backported to 8u262). The 1.8 level of the core build applies to its tests and benchmarks
+ * only, these sources have to stay on what the plugin compiles against.
+ */
+public final class PhaseMetrics
+{
+    public enum Phase
+    {
+        ANALYSIS("file analysis"),
+        // without the analysis of the file, which the first literal of a file triggers
+        INSPECTION("literal inspection"),
+        OCCURRENCE_SEARCH("occurrence search"),
+        FIELD_CREATION("field creation"),
+        REFORMAT("reformat"),
+        REPLACEMENT("occurrence replacement"),
+        IMPORTS("import insertion");
+
+        private final String myDisplayName;
+
+        Phase(String displayName)
+        {
+            myDisplayName = displayName;
+        }
+
+        public String getDisplayName()
+        {
+            return myDisplayName;
+        }
+    }
+
+    private static final int BUCKETS = 24;
+    private static final long NANOS_PER_MICRO = 1000;
+    private static final PhaseMetrics INSTANCE = new PhaseMetrics();
+
+    private final PhaseStats[] myStats = new PhaseStats[Phase.values().length];
+    private final ConcurrentHashMap<String, AtomicLong> myOccurrencesByScope = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong myAnalysisRequests = new AtomicLong();
+    private final AtomicLong myAnalysisComputations = new AtomicLong();
+
+    private PhaseMetrics()
+    {
+        for(int i = 0; i < myStats.length; i++)
+        {
+            myStats[i] = new PhaseStats();
+        }
+    }
+
+    public static PhaseMetrics getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the start time to hand back to {@link #record}
+     */
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+    public void record(Phase phase, long startNanos)
+    {
+        myStats[phase.ordinal()].add(System.nanoTime() - startNanos);
+    }
+
+    public void addOccurrences(String scope, int occurrences)
+    {
+        AtomicLong total = myOccurrencesByScope.get(scope);
+        if(total == null)
+        {
+            AtomicLong newTotal = new AtomicLong();
+            total = myOccurrencesByScope.putIfAbsent(scope, newTotal);
+            if(total == null)
+            {
+                total = newTotal;
+            }
+        }
+        total.addAndGet(occurrences);
+    }
+
+    public void countAnalysisRequest()
+    {
+        myAnalysisRequests.incrementAndGet();
+    }
+
+    /**
+     * Counts an analysis of a file made because the cached one was out of date or missing.
+     */
+    public void countAnalysisComputation()
+    {
+        myAnalysisComputations.incrementAndGet();
+    }
+
+    public long getCount(Phase phase)
+    {
+        return myStats[phase.ordinal()].myCount.get();
+    }
+
+    public long getTotalNanos(Phase phase)
+    {
+        return myStats[phase.ordinal()].myTotalNanos.get();
+    }
+
+    /**
+     * @return the totals so far, to hand to {@link #getSummary(Snapshot)} once the operation is over
+     */
+    public Snapshot snapshot()
+    {
+        return new Snapshot(myStats, myOccurrencesByScope);
+    }
+
+    /**
+     * Other operations running meanwhile, e.g. the highlighting of the open files, are part of the summary too. The
+     * maximum of a phase since a snapshot is only known up to its histogram bucket.
+     * @param since the snapshot taken when the operation started, null for everything since startup
+     * @return one line per phase with its count, total, mean, percentiles and maximum, then the occurrences found
+     * per scope, phases that didn't run are left out; last the hit rate of the file analysis cache since startup,
+     * as the highlighting that fills the cache mostly runs between operations
+     */
+    public String getSummary(Snapshot since)
+    {
+        StringBuilder builder = new StringBuilder("Constants extraction metrics (count, total ms, mean/p50/p90/p99/max us):");
+        for(Phase phase : Phase.values())
+        {
+            PhaseStats stats = since != null ? myStats[phase.ordinal()].since(since.myStats[phase.ordinal()]) : myStats[phase.ordinal()];
+            long count = stats.myCount.get();
+            if(count > 0)
+            {
+                builder.append("\n  ").append(phase.getDisplayName()).append(": ").append(count)
+                    .append(", ").append(stats.myTotalNanos.get() / (NANOS_PER_MICRO * NANOS_PER_MICRO))
+                    .append(", ").append(stats.myTotalNanos.get() / count / NANOS_PER_MICRO)
+                    .append('/').append(stats.getPercentileMicros(0.5))
+                    .append('/').append(stats.getPercentileMicros(0.9))
+                    .append('/').append(stats.getPercentileMicros(0.99))
+                    .append('/').append(stats.myMaxNanos.get() / NANOS_PER_MICRO);
+            }
+        }
+        for(Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(myOccurrencesByScope).entrySet())
+        {
+            Long before = since != null ? since.myOccurrencesByScope.get(entry.getKey()) : null;
+            long occurrences = entry.getValue().get() - (before != null ? before : 0);
+            if(occurrences > 0)
+            {
+                builder.append("\n  occurrences found for ").append(entry.getKey()).append(": ").append(occurrences);
+            }
+        }
+        long requests = myAnalysisRequests.get();
+        if(requests > 0)
+        {
+            long hits = requests - myAnalysisComputations.get();
+            builder.append("\n  file analysis cache since startup: ").append(requests).append(" requests, ").append(hits)
+                .append(" hits (").append(hits * 100 / requests).append("%)");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The totals of every phase at one point in time.
+     */
+    public static final class Snapshot
+    {
+        private final PhaseStats[] myStats;
+        private final HashMap<String, Long> myOccurrencesByScope = new HashMap<String, Long>();
+
+        private Snapshot(PhaseStats[] stats, Map<String, AtomicLong> occurrencesByScope)
+        {
+            myStats = new PhaseStats[stats.length];
+            for(int i = 0; i < stats.length; i++)
+            {
+                myStats[i] = stats[i].since(null);
+            }
+            for(Map.Entry<String, AtomicLong> entry : occurrencesByScope.entrySet())
+            {
+                myOccurrencesByScope.put(entry.getKey(), entry.getValue().get());
+            }
+        }
+    }
+
+    private static class PhaseStats
+    {
+        private final AtomicLong myCount = new AtomicLong();
+        private final AtomicLong myTotalNanos = new AtomicLong();
+        private final AtomicLong myMaxNanos = new AtomicLong();
+        // bucket i counts the latencies below 2^i microseconds, the last one everything above
+        private final AtomicLongArray myBuckets = new AtomicLongArray(BUCKETS);
+
+        private void add(long nanos)
+        {
+            myCount.incrementAndGet();
+            myTotalNanos.addAndGet(nanos);
+
+            long max = myMaxNanos.get();
+            while(nanos > max && !myMaxNanos.compareAndSet(max, nanos))
+            {
+                max = myMaxNanos.get();
+            }
+
+            long micros = nanos / NANOS_PER_MICRO;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            myBuckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        }
+
+        /**
+         * @param earlier a snapshot of these stats, null for a plain copy
+         * @return what was added since the snapshot
+         */
+        private PhaseStats since(PhaseStats earlier)
+        {
+            PhaseStats retVal = new PhaseStats();
+            int highestBucket = -1;
+            for(int i = 0; i < BUCKETS; i++)
+            {
+                long added = myBuckets.get(i) - (earlier != null ? earlier.myBuckets.get(i) : 0);
+                retVal.myBuckets.set(i, added);
+                if(added > 0)
+                {
+                    highestBucket = i;
+                }
+            }
+            retVal.myCount.set(myCount.get() - (earlier != null ? earlier.myCount.get() : 0));
+            retVal.myTotalNanos.set(myTotalNanos.get() - (earlier != null ? earlier.myTotalNanos.get() : 0));
+            long maxNanos = myMaxNanos.get();
+            if(earlier != null)
+            {
+                maxNanos = highestBucket < 0 ? 0 : Math.min(maxNanos, (1L << highestBucket) * NANOS_PER_MICRO);
+            }
+            retVal.myMaxNanos.set(maxNanos);
+            return retVal;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the percentile
+         */
+        private long getPercentileMicros(double percentile)
+        {
+            long threshold = (long)Math.ceil(myCount.get() * percentile);
+            long seen = 0;
+            int bucket = 0;
+            while(bucket < BUCKETS - 1 && (seen += myBuckets.get(bucket)) < threshold)
+            {
+                bucket++;
+            }
+            return 1L << bucket;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.fix;
+
+import auto.core.ConstantNameRegistry;
+import auto.core.PhaseMetrics;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.*;
+
+/**
+ * Extracts constants for many literals at once. Literals are grouped by their text and the class the constant
+ * would be written to, so every group costs one occurrence search and one constant no matter how many of its
+ * literals were selected. The searches run under a single progress bar, the writes in a single command
+ * (or in a few bounded ones when run headless). The literals are held through smart pointers, as writing the
+ * constant of one group can reparse the files the literals of the following groups are in.
+ */
+public class BatchConstantsExtractor
+{
+    private static final String COMMAND_NAME = "Extract Constants";
+    private static final String SEARCH_TITLE = "Searching for literal occurrences";
+    private static final Logger LOG = Logger.getInstance("#auto.fix.BatchConstantsExtractor");
+
+    private final Project myProject;
+    private final SmartPointerManager myPointerManager;
+    private final String myActionCommand;
+    private final LinkedHashMap<GroupKey, LiteralGroup> myGroups = new LinkedHashMap<GroupKey, LiteralGroup>();
+    private final HashMap<PsiClass, ConstantNameRegistry> myNameRegistries = new HashMap<PsiClass, ConstantNameRegistry>();
+    private int myConstantsCreated = 0;
+    private int myGroupsApplied = 0;
+    private final HashSet<VirtualFile> myFilesTouched = new HashSet<VirtualFile>();
+
+    public BatchConstantsExtractor(Project project, String actionCommand)
+    {
+        myProject = project;
+        myPointerManager = SmartPointerManager.getInstance(project);
+        myActionCommand = actionCommand;
+    }
+
+    /**
+     * Needs a read action.
+     */
+    public void addLiteral(PsiLiteralExpression expression)
+    {
+        addLiteral(expression, null);
+    }
+
+    /**
+     * Needs a read action.
+     * @param suggestedName the name already suggested for the literal, null to suggest one during the search
+     */
+    public void addLiteral(PsiLiteralExpression expression, String suggestedName)
+    {
+        getGroup(expression, suggestedName);
+    }
+
+    /**
+     * Adds a literal whose occurrences are collected by the caller: the group of the literal is not searched, its
+     * occurrences are exactly the literals added this way. Needs a read action.
+     */
+    public void addOccurrence(PsiLiteralExpression expression, String suggestedName)
+    {
+        LiteralGroup group = getGroup(expression, suggestedName);
+        if(group != null)
+        {
+            if(group.myOccurrences == null)
+            {
+                group.myOccurrences = new ArrayList<SmartPsiElementPointer<PsiExpression>>();
+            }
+            group.myOccurrences.add(myPointerManager.<PsiExpression>createSmartPsiElementPointer(expression));
+        }
+    }
+
+    private LiteralGroup getGroup(PsiLiteralExpression expression, String suggestedName)
+    {
+        LiteralGroup retVal = null;
+        try
+        {
+            if(expression.isValid())
+            {
+                GroupKey key = new GroupKey(getDestination(expression), expression.getText());
+                retVal = myGroups.get(key);
+                if(retVal == null)
+                {
+                    retVal = new LiteralGroup(myPointerManager.createSmartPsiElementPointer(expression));
+                    retVal.myConstantName = suggestedName;
+                    myGroups.put(key, retVal);
+                }
+            }
+        }
+        catch(PsiInvalidElementAccessException psi)
+        {
+            // ignore - the literal has been replaced since the problem was registered
+        }
+        return retVal;
+    }
+
+
+    private Object getDestination(PsiLiteralExpression expression)
+    {
+        Object retVal = PsiUtil.getTopLevelClass(expression);
+        if(myActionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND))
+        {
+            retVal = IntroduceAndPropagateConstantHandler.findBaseClass((PsiClass)retVal);
+        }
+        else if(myActionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND))
+        {
+            retVal = ((PsiJavaFile)expression.getContainingFile()).getPackageName();
+        }
+        else if(myActionCommand.equals(IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND))
+        {
+            retVal = ModuleUtil.findModuleForPsiElement(expression);
+        }
+        else if(myActionCommand.equals(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND))
+        {
+            retVal = myProject;
+        }
+        return retVal;
+    }
+
+    public int getGroupCount()
+    {
+        return myGroupsApplied + myGroups.size();
+    }
+
+    public int getConstantsCreated()
+    {
+        return myConstantsCreated;
+    }
+
+    public int getFilesTouched()
+    {
+        return myFilesTouched.size();
+    }
+
+    /**
+     * Searches the occurrences of every group under a modal progress and then writes all constants in one command.
+     * Must be called on the event dispatch thread.
+     */
+    public void run()
+    {
+        if(!myGroups.isEmpty())
+        {
+            PhaseMetrics.Snapshot metricsStart = PhaseMetrics.getInstance().snapshot();
+            boolean completed = true;
+            if(isSearchNeeded())
+            {
+                completed = ProgressManager.getInstance().runProcessWithProgressSynchronously(new Runnable()
+                {
+                    public void run()
+                    {
+                        ApplicationManager.getApplication().runReadAction(new Runnable()
+                        {
+                            public void run()
+                            {
+                                collectOccurrences();
+                            }
+                        });
+                    }
+                }, SEARCH_TITLE, true, myProject);
+            }
+
+            if(completed)
+            {
+                CommandProcessor.getInstance().executeCommand(myProject, new Runnable()
+                {
+                    public void run()
+                    {
+                        applyGroups(myGroups.values());
+                    }
+                }, COMMAND_NAME, null);
+                LOG.info(PhaseMetrics.getInstance().getSummary(metricsStart));
+            }
+        }
+    }
+
+    /**
+     * Runs the search on the calling thread without any progress and writes the constants in commands of at most
+     * groupsPerCommand constants each, so that no single command keeps the undo history of a whole project.
+     * The groups are dropped once they are written, so the literals can be added and run a module at a time.
+     * Must not be called on the event dispatch thread or inside a read action.
+     */
+    public void runHeadless(int groupsPerCommand)
+    {
+        ApplicationManager.getApplication().runReadAction(new Runnable()
+        {
+            public void run()
+            {
+                collectOccurrences();
+            }
+        });
+
+        final ArrayList<LiteralGroup> groups = new ArrayList<LiteralGroup>(myGroups.values());
+        for(int start = 0; start < groups.size(); start += groupsPerCommand)
+        {
+            final List<LiteralGroup> batch = groups.subList(start, Math.min(start + groupsPerCommand, groups.size()));
+            ApplicationManager.getApplication().invokeAndWait(new Runnable()
+            {
+                public void run()
+                {
+                    CommandProcessor.getInstance().executeCommand(myProject, new Runnable()
+                    {
+                        public void run()
+                        {
+                            applyGroups(batch);
+                        }
+                    }, COMMAND_NAME, null);
+                }
+            }, ModalityState.NON_MODAL);
+        }
+        myGroupsApplied += myGroups.size();
+        myGroups.clear();
+    }
+
+    private boolean isSearchNeeded()
+    {
+        boolean retVal = false;
+        for(LiteralGroup group : myGroups.values())
+        {
+            if(group.myConstantName == null || group.myOccurrences == null)
+            {
+                retVal = true;
+                break;
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Needs a read action.
+     */
+    private void collectOccurrences()
+    {
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        int processed = 0;
+        for(LiteralGroup group : myGroups.values())
+        {
+            PsiLiteralExpression representative = group.getRepresentative();
+            if(indicator != null)
+            {
+                indicator.checkCanceled();
+                indicator.setFraction((double)processed / myGroups.size());
+                indicator.setText2(representative != null ? representative.getText() : "");
+            }
+
+            try
+            {
+                // otherwise the group is skipped when it is applied
+                if(representative != null)
+                {
+                    if(group.myConstantName == null)
+                    {
+                        group.myConstantName = IntroduceAndPropagateConstantHandler.extractDefaultFieldName(representative);
+                    }
+                    // otherwise the occurrences of the group have been collected by the caller
+                    if(group.myOccurrences == null)
+                    {
+                        IntroduceAndPropagateConstantHandler handler = new IntroduceAndPropagateConstantHandler(myProject, representative);
+                        handler.setReportSearchProgress(false);
+                        HashSet<PsiExpression> occurrences = handler.findOccurrences(myActionCommand);
+                        group.myOccurrences = new ArrayList<SmartPsiElementPointer<PsiExpression>>(occurrences.size());
+                        for(PsiExpression occurrence : occurrences)
+                        {
+                            group.myOccurrences.add(myPointerManager.createSmartPsiElementPointer(occurrence));
+                        }
+                    }
+                }
+            }
+            catch(PsiInvalidElementAccessException psi)
+            {
+                // ignore - the group is skipped when it is applied
+            }
+            processed++;
+        }
+    }
+
+    /**
+     * Needs to run inside a command on the event dispatch thread, the constants are written in their own write actions.
+     */
+    private void applyGroups(Collection<LiteralGroup> groups)
+    {
+        for(LiteralGroup group : groups)
+        {
+            // restored only now, the constants written for the groups before may have reparsed their files
+            PsiLiteralExpression representative = group.getRepresentative();
+            HashSet<PsiExpression> occurrences = group.getValidOccurrences();
+            // a group can be swallowed by an earlier one, e.g. a sub package that shares the parent package's constant
+            if(representative != null && !occurrences.isEmpty())
+            {
+                for(PsiExpression occurrence : occurrences)
+                {
+                    myFilesTouched.add(occurrence.getContainingFile().getVirtualFile());
+                }
+                IntroduceAndPropagateConstantHandler handler = new IntroduceAndPropagateConstantHandler(myProject, representative);
+                // different literals can clean up to the same name, e.g. "a-b" and "a b"
+                handler.setNameRegistries(myNameRegistries);
+                handler.performAction(myActionCommand, group.myConstantName, occurrences);
+                myConstantsCreated += handler.getFieldsCreated();
+            }
+        }
+    }
+
+    private static class LiteralGroup
+    {
+        private final SmartPsiElementPointer<PsiLiteralExpression> myRepresentative;
+        private String myConstantName;
+        private List<SmartPsiElementPointer<PsiExpression>> myOccurrences;
+
+        private LiteralGroup(SmartPsiElementPointer<PsiLiteralExpression> representative)
+        {
+            myRepresentative = representative;
+        }
+
+        /**
+         * @return the representative literal, null if it is gone
+         */
+        private PsiLiteralExpression getRepresentative()
+        {
+            PsiLiteralExpression retVal = myRepresentative.getElement();
+            return retVal != null && retVal.isValid() ? retVal : null;
+        }
+
+        private HashSet<PsiExpression> getValidOccurrences()
+        {
+            HashSet<PsiExpression> retVal = new HashSet<PsiExpression>();
+            if(myOccurrences != null)
+            {
+                for(SmartPsiElementPointer<PsiExpression> pointer : myOccurrences)
+                {
+                    PsiExpression occurrence = pointer.getElement();
+                    if(occurrence != null && occurrence.isValid())
+                    {
+                        retVal.add(occurrence);
+                    }
+                }
+            }
+            return retVal;
+        }
+    }
+
+    private static class GroupKey
+    {
+        private final Object myDestination;
+        private final String myText;
+
+        private GroupKey(Object destination, String text)
+        {
+            myDestination = destination;
+            myText = text;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            boolean retVal = false;
+            if(o instanceof GroupKey)
+            {
+                GroupKey other = (GroupKey)o;
+                retVal = myText.equals(other.myText)
+                    && (myDestination == null ? other.myDestination == null : myDestination.equals(other.myDestination));
+            }
+            return retVal;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * myText.hashCode() + (myDestination == null ? 0 : myDestination.hashCode());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.fix;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiReferenceList;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.searches.ClassInheritorsSearch;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+
+import java.util.*;
+
+/**
+ * Caches the base class of a hierarchy and the inheritors of a base class on the classes themselves until the next
+ * change of the Java structure, so the dialog, the handler and repeated extractions share one resolution.
+ * <p/>
+ * The inheritors are found by a single search over the module of the base class and every module depending on it.
+ * Searching the modules one by one would walk the shared dependencies of the modules once per module.
+ */
+class ClassHierarchyCache
+{
+    private static final Key<CachedValue<PsiClass>> BASE_CLASS = Key.create("auto.fix.ClassHierarchyCache.baseClass");
+    private static final Key<CachedValue<List<PsiClass>>> INHERITORS = Key.create("auto.fix.ClassHierarchyCache.inheritors");
+    private static final boolean INCLUDE_ANONYMOUS = true;
+    private static final boolean CHECK_DEEP = true;
+
+    private ClassHierarchyCache()
+    {
+    }
+
+    /**
+     * @return the topmost writable class the given class extends, the class itself if it extends nothing writable
+     */
+    static PsiClass getBaseClass(final PsiClass topLevelClass)
+    {
+        CachedValue<PsiClass> cachedBaseClass = topLevelClass.getUserData(BASE_CLASS);
+        if(cachedBaseClass == null)
+        {
+            cachedBaseClass = CachedValuesManager.getManager(topLevelClass.getProject()).createCachedValue(new CachedValueProvider<PsiClass>()
+            {
+                public Result<PsiClass> compute()
+                {
+                    return Result.create(findBaseClass(topLevelClass), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+                }
+            }, false);
+            topLevelClass.putUserData(BASE_CLASS, cachedBaseClass);
+        }
+        return cachedBaseClass.getValue();
+    }
+
+    private static PsiClass findBaseClass(PsiClass topLevelClass)
+    {
+        PsiClass retVal = topLevelClass;
+
+        PsiReferenceList extendsList = topLevelClass.getExtendsList();
+        PsiClass superClass = topLevelClass.getSuperClass();
+        if(extendsList != null && extendsList.getChildren().length > 0 && superClass != null && superClass.isWritable())
+        {
+            retVal = getBaseClass(superClass);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Needs a read action and honours the cancellation of the caller's progress indicator.
+     * @return the deep inheritors of the base class in its module and the modules depending on it
+     */
+    static List<PsiClass> getInheritors(final PsiClass baseClass)
+    {
+        CachedValue<List<PsiClass>> cachedInheritors = baseClass.getUserData(INHERITORS);
+        if(cachedInheritors == null)
+        {
+            cachedInheritors = CachedValuesManager.getManager(baseClass.getProject()).createCachedValue(new CachedValueProvider<List<PsiClass>>()
+            {
+                public Result<List<PsiClass>> compute()
+                {
+                    return Result.create(findInheritors(baseClass), PsiModificationTracker.JAVA_STRUCTURE_MODIFICATION_COUNT);
+                }
+            }, false);
+            baseClass.putUserData(INHERITORS, cachedInheritors);
+        }
+        return cachedInheritors.getValue();
+    }
+
+    /**
+     * @return the base class's module and every module depending on it, the whole file if the class is in no module
+     */
+    static GlobalSearchScope getHierarchyScope(PsiClass baseClass)
+    {
+        Module module = ModuleUtil.findModuleForPsiElement(baseClass);
+        return module != null ? GlobalSearchScope.moduleWithDependentsScope(module) : GlobalSearchScope.fileScope(baseClass.getContainingFile());
+    }
+
+    private static List<PsiClass> findInheritors(PsiClass baseClass)
+    {
+        Collection<PsiClass> inheritors = ClassInheritorsSearch.search(baseClass, getHierarchyScope(baseClass), CHECK_DEEP, INCLUDE_ANONYMOUS).findAll();
+        return Collections.unmodifiableList(new ArrayList<PsiClass>(inheritors));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.fix;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleFileIndex;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiUtil;
+
+import java.util.*;
+
+/**
+ * Places the holder interface of the module and project scope constants. The holder goes to the module every module
+ * using the constant depends on, the one nearest to them when there are several, so the constant resolves
+ * wherever it replaces a literal. Once the holder exists it stays where it is, the project never gets a second
+ * class of the same name.
+ */
+class ConstantHolderLocator
+{
+    private final Map<Module, Set<Module>> myDependencies = new HashMap<Module, Set<Module>>();
+
+    /**
+     * @return the module the holder must go to, null if the using modules have no module in common
+     */
+    Module chooseModule(Collection<Module> usingModules)
+    {
+        Set<Module> candidates = null;
+        for(Module usingModule : usingModules)
+        {
+            if(candidates == null)
+            {
+                candidates = new HashSet<Module>(getDependencies(usingModule));
+            }
+            else
+            {
+                candidates.retainAll(getDependencies(usingModule));
+            }
+        }
+
+        // the nearest candidate is the one depending on the most other candidates
+        Module retVal = null;
+        int retValDepth = -1;
+        if(candidates != null)
+        {
+            for(Module candidate : candidates)
+            {
+                HashSet<Module> candidateDependencies = new HashSet<Module>(getDependencies(candidate));
+                candidateDependencies.retainAll(candidates);
+                int depth = candidateDependencies.size();
+                if(depth > retValDepth || (depth == retValDepth && candidate.getName().compareTo(retVal.getName()) < 0))
+                {
+                    retVal = candidate;
+                    retValDepth = depth;
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return true if code of the using module can see the classes of the given one
+     */
+    boolean canSee(Module usingModule, Module module)
+    {
+        return getDependencies(usingModule).contains(module);
+    }
+
+    /**
+     * @return the module itself and every module it depends on, directly or not
+     */
+    private Set<Module> getDependencies(Module module)
+    {
+        Set<Module> retVal = myDependencies.get(module);
+        if(retVal == null)
+        {
+            retVal = new HashSet<Module>();
+            LinkedList<Module> toVisit = new LinkedList<Module>();
+            toVisit.add(module);
+            while(!toVisit.isEmpty())
+            {
+                Module visited = toVisit.removeFirst();
+                if(retVal.add(visited))
+                {
+                    toVisit.addAll(Arrays.asList(ModuleRootManager.getInstance(visited).getDependencies()));
+                }
+            }
+            myDependencies.put(module, retVal);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the holder already in the project's sources, null if there is none yet
+     */
+    static PsiClass findHolder(Project project, String qualifiedName)
+    {
+        return JavaPsiFacade.getInstance(project).findClass(qualifiedName, GlobalSearchScope.projectScope(project));
+    }
+
+    /**
+     * Reuses the holder if the project already has one, otherwise creates it in the module. Needs a write action.
+     * @return null if the existing holder can't be seen from every using module or the module has no source root
+     * to create the holder in
+     */
+    PsiClass findOrCreateHolder(Module module, Collection<Module> usingModules, String qualifiedName)
+    {
+        PsiClass retVal = findHolder(module.getProject(), qualifiedName);
+        if(retVal != null)
+        {
+            Module holderModule = ModuleUtil.findModuleForPsiElement(retVal);
+            boolean isVisible = holderModule != null;
+            Iterator<Module> iterator = usingModules.iterator();
+            while(isVisible && iterator.hasNext())
+            {
+                isVisible = canSee(iterator.next(), holderModule);
+            }
+            if(!isVisible)
+            {
+                retVal = null;
+            }
+        }
+        else
+        {
+            PsiDirectory directory = findOrCreatePackageDirectory(module, getPackageName(qualifiedName));
+            if(directory != null)
+            {
+                retVal = JavaDirectoryService.getInstance().createInterface(directory, getShortName(qualifiedName));
+                PsiUtil.setModifierProperty(retVal, PsiModifier.PUBLIC, true);
+            }
+        }
+        return retVal;
+    }
+
+    private static PsiDirectory findOrCreatePackageDirectory(Module module, String packageName)
+    {
+        PsiDirectory retVal = null;
+        VirtualFile sourceRoot = getSourceRoot(module);
+        if(sourceRoot != null)
+        {
+            retVal = PsiManager.getInstance(module.getProject()).findDirectory(sourceRoot);
+            if(retVal != null && packageName.length() > 0)
+            {
+                for(String subPackageName : packageName.split("\\."))
+                {
+                    PsiDirectory subdirectory = retVal.findSubdirectory(subPackageName);
+                    retVal = subdirectory != null ? subdirectory : retVal.createSubdirectory(subPackageName);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the first production source root of the module, its first test source root if it has no other
+     */
+    private static VirtualFile getSourceRoot(Module module)
+    {
+        ModuleRootManager rootManager = ModuleRootManager.getInstance(module);
+        ModuleFileIndex fileIndex = rootManager.getFileIndex();
+        VirtualFile retVal = null;
+        for(VirtualFile sourceRoot : rootManager.getSourceRoots())
+        {
+            if(retVal == null || (fileIndex.isInTestSourceContent(retVal) && !fileIndex.isInTestSourceContent(sourceRoot)))
+            {
+                retVal = sourceRoot;
+            }
+        }
+        return retVal;
+    }
+
+    static String getShortName(String qualifiedName)
+    {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    private static String getPackageName(String qualifiedName)
+    {
+        int lastDot = qualifiedName.lastIndexOf('.');
+        return lastDot > 0 ? qualifiedName.substring(0, lastDot) : "";
+    }
+}
@@ -15,28 +15,37 @@
  */
 package auto.fix;
 
+import auto.inspection.ConstantsExtractionInspection;
+import auto.inspection.FileLiteralAnalysis;
+import com.intellij.codeInspection.BatchQuickFix;
+import com.intellij.codeInspection.CommonProblemDescriptor;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.InputValidator;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiLiteralExpression;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.EventListener;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * User: Call me Ismail
  * Date: Apr 21, 2010
  * Time: 8:43:20 PM
  */
-public class ConstantsExtractorFix implements LocalQuickFix, EventListener
+public class ConstantsExtractorFix implements LocalQuickFix, BatchQuickFix<CommonProblemDescriptor>, EventListener
 {
-    private PsiLiteralExpression constantExpression;
-
-    public ConstantsExtractorFix(PsiLiteralExpression expression)
+    /**
+     * The fix holds no PSI, the literal is taken from the problem descriptor when the fix is applied, so one instance
+     * can be shared by all the problems of an inspection pass.
+     */
+    public ConstantsExtractorFix()
     {
-        constantExpression = expression;
     }
 
     @NotNull
@@ -53,21 +62,55 @@ public class ConstantsExtractorFix implements LocalQuickFix, EventListener
 
     public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor)
     {
-        IntroduceAndPropagateConstantHandler introduceConstantHandler = new IntroduceAndPropagateConstantHandler(project, constantExpression);
-        introduceConstantHandler.invoke(project, constantExpression, descriptor);
+        PsiElement element = descriptor.getPsiElement();
+        if(element instanceof PsiLiteralExpression && element.isValid())
+        {
+            PsiLiteralExpression constantExpression = (PsiLiteralExpression)element;
+            IntroduceAndPropagateConstantHandler introduceConstantHandler = new IntroduceAndPropagateConstantHandler(project, constantExpression);
+            introduceConstantHandler.invoke(project, constantExpression, descriptor);
+        }
+    }
+
+    /**
+     * Applies the fix to every selected problem of the inspection results view at once, using the suggested names
+     * and the scope chosen in the inspection options instead of asking for each of them.
+     */
+    public void applyFix(@NotNull Project project, @NotNull CommonProblemDescriptor[] descriptors, @NotNull List<PsiElement> psiElementsToIgnore,
+                         @Nullable Runnable refreshViews)
+    {
+        BatchConstantsExtractor extractor = new BatchConstantsExtractor(project, ConstantsExtractionInspection.getAutoFixActionCommand());
+        HashSet<PsiElement> ignoredElements = new HashSet<PsiElement>(psiElementsToIgnore);
+        for(CommonProblemDescriptor descriptor : descriptors)
+        {
+            if(descriptor instanceof ProblemDescriptor)
+            {
+                PsiElement element = ((ProblemDescriptor)descriptor).getPsiElement();
+                if(element instanceof PsiLiteralExpression && !ignoredElements.contains(element))
+                {
+                    extractor.addLiteral((PsiLiteralExpression)element, FileLiteralAnalysis.getCachedSuggestedName((PsiLiteralExpression)element));
+                }
+            }
+        }
+
+        extractor.run();
+
+        if(refreshViews != null)
+        {
+            refreshViews.run();
+        }
     }
 
-    public void applyDefaultFix(Project project, String command, boolean useSuggestedName)
+    public void applyDefaultFix(Project project, PsiLiteralExpression constantExpression, String command, boolean useSuggestedName)
     {
         IntroduceAndPropagateConstantHandler introduceConstantHandler = new IntroduceAndPropagateConstantHandler(project, constantExpression);
+        String suggestedName = IntroduceAndPropagateConstantHandler.getSuggestedName(constantExpression);
         if(useSuggestedName)
         {
-            introduceConstantHandler.setPropagateSettings(command, IntroduceAndPropagateConstantHandler.extractDefaultFieldName(constantExpression), false);
+            introduceConstantHandler.setPropagateSettings(command, suggestedName, false);
         }
         else
         {
             //TODO: there's some utility that let's you highlight the actual text in the file and rename right in the editor - figure out how to use that 
-            String suggestedName = IntroduceAndPropagateConstantHandler.extractDefaultFieldName(constantExpression);
             String constantName = Messages
                 .showEditableChooseDialog("Set constant name","Rename Suggested Constant Name", null, new String[]{}, suggestedName, new InputValidator()
                     {
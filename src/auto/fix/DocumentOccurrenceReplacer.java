@@ -0,0 +1,119 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.fix;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiElementFactory;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiFile;
+import com.intellij.refactoring.introduceVariable.IntroduceVariableBase;
+
+import java.util.*;
+
+/**
+ * Replaces the occurrences file by file. Files with many occurrences are edited through their document instead of
+ * the PSI: their occurrences are replaced from the last to the first, so the offsets of the ones still to come don't
+ * move, and the document is committed once afterwards instead of once per occurrence. The other files have their
+ * occurrences replaced in the PSI one by one.
+ */
+class DocumentOccurrenceReplacer
+{
+    /**
+     * The number of occurrences in a file from which the document edits pay off over replacing the PSI elements one
+     * by one.
+     */
+    static final int BULK_REPLACEMENT_THRESHOLD = 100;
+
+    private static final Comparator<TextRange> LAST_FIRST = new Comparator<TextRange>()
+    {
+        public int compare(TextRange o1, TextRange o2)
+        {
+            return o2.getStartOffset() - o1.getStartOffset();
+        }
+    };
+
+    private final Project myProject;
+
+    DocumentOccurrenceReplacer(Project project)
+    {
+        myProject = project;
+    }
+
+    /**
+     * Needs a write action.
+     * @param context the element the replacement text is resolved against when an occurrence is replaced in the PSI
+     */
+    void replace(Collection<PsiExpression> occurrences, String replacementText, PsiElement context)
+    {
+        LinkedHashMap<PsiFile, List<PsiExpression>> occurrencesByFile = new LinkedHashMap<PsiFile, List<PsiExpression>>();
+        for(PsiExpression occurrence : occurrences)
+        {
+            if(occurrence.isValid())
+            {
+                PsiFile file = occurrence.getContainingFile();
+                List<PsiExpression> fileOccurrences = occurrencesByFile.get(file);
+                if(fileOccurrences == null)
+                {
+                    fileOccurrences = new ArrayList<PsiExpression>();
+                    occurrencesByFile.put(file, fileOccurrences);
+                }
+                fileOccurrences.add(occurrence);
+            }
+        }
+
+        PsiDocumentManager documentManager = PsiDocumentManager.getInstance(myProject);
+        for(Map.Entry<PsiFile, List<PsiExpression>> entry : occurrencesByFile.entrySet())
+        {
+            Document document = entry.getValue().size() >= BULK_REPLACEMENT_THRESHOLD ? documentManager.getDocument(entry.getKey()) : null;
+            if(document == null)
+            {
+                replaceElements(entry.getValue(), replacementText, context);
+            }
+            else
+            {
+                // the PSI changes made so far, e.g. the new field, have to reach the document before it is edited
+                documentManager.doPostponedOperationsAndUnblockDocument(document);
+
+                ArrayList<TextRange> ranges = new ArrayList<TextRange>(entry.getValue().size());
+                for(PsiExpression occurrence : entry.getValue())
+                {
+                    ranges.add(occurrence.getTextRange());
+                }
+                Collections.sort(ranges, LAST_FIRST);
+
+                for(TextRange range : ranges)
+                {
+                    document.replaceString(range.getStartOffset(), range.getEndOffset(), replacementText);
+                }
+                documentManager.commitDocument(document);
+            }
+        }
+    }
+
+    private void replaceElements(List<PsiExpression> occurrences, String replacementText, PsiElement context)
+    {
+        PsiElementFactory factory = JavaPsiFacade.getInstance(myProject).getElementFactory();
+        for(PsiExpression occurrence : occurrences)
+        {
+            IntroduceVariableBase.replace(occurrence, factory.createExpressionFromText(replacementText, context), myProject);
+        }
+    }
+}
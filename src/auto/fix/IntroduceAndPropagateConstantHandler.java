@@ -15,24 +15,34 @@
  */
 package auto.fix;
 
+import auto.core.ConstantNameGenerator;
+import auto.core.ConstantNameRegistry;
+import auto.core.ConstantNamer;
+import auto.core.PhaseMetrics;
+import auto.index.ConstantFieldIndex;
+import auto.index.LiteralValueIndex;
+import auto.inspection.ConstantsExtractionInspection;
+import auto.inspection.FileLiteralAnalysis;
 import com.intellij.codeInspection.ProblemDescriptor;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.codeStyle.CodeStyleManager;
 import com.intellij.psi.impl.source.codeStyle.CodeEditUtil;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PackageScope;
-import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.searches.AllClassesSearch;
-import com.intellij.psi.search.searches.ClassInheritorsSearch;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtil;
 import com.intellij.refactoring.BaseRefactoringProcessor;
-import com.intellij.refactoring.introduceVariable.IntroduceVariableBase;
 import com.intellij.refactoring.util.RefactoringUtil;
 import com.intellij.refactoring.util.occurences.ExpressionOccurenceManager;
 import com.intellij.usageView.UsageInfo;
@@ -53,10 +63,20 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
     private PsiLiteralExpression myLiteralExpression;
     private String lastActionCommand = IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND;
     private static final String REFACTORING_NAME = "IntroduceAndPropagateConstant";
+    private static final String SUGGEST_NAME_TITLE = "Suggesting constant name";
     private String lastConstantName;
+    private boolean myReportSearchProgress = true;
+    private List<SmartPsiElementPointer<PsiExpression>> myOccurrenceSnapshot;
+    private String mySnapshotText;
+    private Map<PsiClass, ConstantNameRegistry> myNameRegistries = new HashMap<PsiClass, ConstantNameRegistry>();
+    private int myFieldsCreated = 0;
+    private PhaseMetrics.Snapshot myMetricsStart;
     private static final String CONSTANTS_IF_POSTFIX = "ConstantsIF";
     private static final String JAVA_FILE_TYPE = ".java";
     private static final boolean INCLUDE_SUBPACKAGES = true;
+    private static final ConstantNamer NAMER = ConstantNameGenerator.getInstance();
+    private static final PhaseMetrics METRICS = PhaseMetrics.getInstance();
+    private static final Logger LOG = Logger.getInstance("#auto.fix.IntroduceAndPropagateConstantHandler");
 
     public IntroduceAndPropagateConstantHandler(Project project, PsiLiteralExpression literalExpression)
     {
@@ -77,17 +97,19 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
     {
         lastActionCommand = actionCommand;
         lastConstantName = constantName;
+        myOccurrenceSnapshot = null;
+        myMetricsStart = METRICS.snapshot();
 
         setPreviewUsages(isPreview);
 
         super.doRun();
     }
 
-    private void processClassActionCommand(String constantName)
+    private void processClassActionCommand(String constantName, HashSet<PsiExpression> occurrences)
     {
         try
         {
-            HashSet<PsiExpression> psiExpressions = findClassActionOccurrences(PsiUtil.getTopLevelClass(myLiteralExpression));
+            HashSet<PsiExpression> psiExpressions = occurrences != null ? occurrences : findClassActionOccurrences(PsiUtil.getTopLevelClass(myLiteralExpression));
             createConstants(psiExpressions, PsiUtil.getTopLevelClass(myLiteralExpression),
                         PsiModifier.PRIVATE, false, constantName);
         }
@@ -131,11 +153,11 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         return psiExpressions;
     }
 
-    private void processPackageActionCommand(String constantName)
+    private void processPackageActionCommand(String constantName, HashSet<PsiExpression> occurrences)
     {
         PsiPackage aPackage = retrievePackage();
 
-        HashSet<PsiExpression> elementsFound = findPackageActionOccurrences(aPackage);
+        HashSet<PsiExpression> elementsFound = occurrences != null ? occurrences : findPackageActionOccurrences(aPackage);
 
         if(elementsFound.size() > 0)
         {
@@ -149,11 +171,8 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         HashSet<PsiExpression> elementsFound = new HashSet<PsiExpression>();
         if(aPackage != null)
         {
+            // the package scope already covers the sub packages
             searchPackagesForOccurrences(aPackage, elementsFound);
-            for(PsiPackage subPackage : aPackage.getSubPackages())
-            {
-                searchPackagesForOccurrences(subPackage, elementsFound);
-            }
         }
         return elementsFound;
     }
@@ -178,11 +197,157 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         if (aPackage != null)
         {
             GlobalSearchScope searchScope = PackageScope.packageScope(aPackage, INCLUDE_SUBPACKAGES);
+            getOccurrencesFromClasses(getCandidateClasses(searchScope), elementsFound);
+        }
+    }
+
+    /**
+     * @return the classes of the files containing the literal value, every class of the scope while indexing
+     */
+    private Collection<PsiClass> getCandidateClasses(GlobalSearchScope searchScope)
+    {
+        Collection<PsiClass> retVal;
+        if(LiteralValueIndex.isAvailable(myProject))
+        {
+            retVal = new ArrayList<PsiClass>();
+            for(PsiJavaFile javaFile : LiteralValueIndex.getCandidateFiles(myLiteralExpression, searchScope))
+            {
+                retVal.addAll(Arrays.asList(javaFile.getClasses()));
+            }
+        }
+        else
+        {
             Query<PsiClass> query = AllClassesSearch.search(searchScope, myProject);
-            getOccurrencesFromFindAllQuery(query, elementsFound);
+            retVal = query.findAll();
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the literal's module for module scope, every module of the project for project scope
+     */
+    private List<Module> getScopeModules(String actionCommand)
+    {
+        List<Module> retVal = new ArrayList<Module>();
+        if(actionCommand.equals(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND))
+        {
+            retVal.addAll(Arrays.asList(ModuleManager.getInstance(myProject).getModules()));
+        }
+        else
+        {
+            Module module = ModuleUtil.findModuleForPsiElement(myLiteralExpression);
+            if(module != null)
+            {
+                retVal.add(module);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * The candidate classes of all the modules go to one search, so the workers stay busy across modules of very
+     * different sizes instead of waiting for the largest one.
+     */
+    private HashSet<PsiExpression> findModulesActionOccurrences(List<Module> modules)
+    {
+        ArrayList<PsiClass> candidateClasses = new ArrayList<PsiClass>();
+        for(Module module : modules)
+        {
+            candidateClasses.addAll(getCandidateClasses(GlobalSearchScope.moduleScope(module)));
+        }
+
+        HashSet<PsiExpression> elementsFound = new HashSet<PsiExpression>();
+        getOccurrencesFromClasses(candidateClasses, elementsFound);
+        return elementsFound;
+    }
+
+    /**
+     * Extracts the constant to the holder interface, placed in the module all the modules using it depend on, or
+     * kept in its module if it already exists. The occurrences of modules that can't see the holder are left alone.
+     */
+    private void processSharedHolderCommand(String actionCommand, String constantName, HashSet<PsiExpression> occurrences)
+    {
+        try
+        {
+            HashSet<PsiExpression> elementsFound = occurrences != null ? occurrences : findModulesActionOccurrences(getScopeModules(actionCommand));
+
+            HashMap<PsiExpression, Module> occurrenceModules = new HashMap<PsiExpression, Module>();
+            for(PsiExpression occurrence : elementsFound)
+            {
+                Module module = ModuleUtil.findModuleForPsiElement(occurrence);
+                if(module != null)
+                {
+                    occurrenceModules.put(occurrence, module);
+                }
+            }
+
+            ConstantHolderLocator locator = new ConstantHolderLocator();
+            String holderName = ConstantsExtractionInspection.constExtract_holderClass;
+            PsiClass existingHolder = ConstantHolderLocator.findHolder(myProject, holderName);
+            Module holderModule = existingHolder != null ? ModuleUtil.findModuleForPsiElement(existingHolder)
+                                                         : locator.chooseModule(new HashSet<Module>(occurrenceModules.values()));
+            if(holderModule == null)
+            {
+                holderModule = ModuleUtil.findModuleForPsiElement(myLiteralExpression);
+            }
+
+            final HashSet<PsiExpression> visibleOccurrences = new HashSet<PsiExpression>();
+            final HashSet<Module> usingModules = new HashSet<Module>();
+            for(Map.Entry<PsiExpression, Module> occurrenceModule : occurrenceModules.entrySet())
+            {
+                if(holderModule != null && locator.canSee(occurrenceModule.getValue(), holderModule))
+                {
+                    visibleOccurrences.add(occurrenceModule.getKey());
+                    usingModules.add(occurrenceModule.getValue());
+                }
+            }
+
+            if(visibleOccurrences.size() < occurrenceModules.size())
+            {
+                HashSet<String> blindModules = new HashSet<String>();
+                for(Module module : occurrenceModules.values())
+                {
+                    if(!usingModules.contains(module))
+                    {
+                        blindModules.add(module.getName());
+                    }
+                }
+                LOG.warn(holderName + " can't be seen from the modules " + blindModules + ", their occurrences of " + myLiteralExpression.getText()
+                         + " are left alone");
+            }
+
+            if(visibleOccurrences.size() > 0)
+            {
+                PsiClass holder = createHolder(locator, holderModule, usingModules);
+                if(holder != null)
+                {
+                    createConstants(visibleOccurrences, holder, PsiModifier.PACKAGE_LOCAL, INCLUDE_SUBPACKAGES, constantName);
+                }
+                else
+                {
+                    LOG.warn("Unable to create or use " + holderName + " in module " + holderModule.getName());
+                }
+            }
+        }
+        catch(PsiInvalidElementAccessException psi)
+        {
+            // ignore - auto mode already replaced the literal expression
         }
     }
 
+    private static PsiClass createHolder(final ConstantHolderLocator locator, final Module holderModule, final Collection<Module> usingModules)
+    {
+        final PsiClass[] holder = new PsiClass[1];
+        createAndRunCommand(holderModule.getProject(), new Runnable()
+        {
+            public void run()
+            {
+                holder[0] = locator.findOrCreateHolder(holderModule, usingModules, ConstantsExtractionInspection.constExtract_holderClass);
+            }
+        });
+        return holder[0];
+    }
+
     private static PsiClass createNewInterface(final PsiPackage aPackage)
     {
         final PsiClass[] targetClass = new PsiClass[1];
@@ -192,7 +357,7 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
             public void run()
             {
                 PsiDirectory directory = aPackage.getDirectories()[0];
-                String fileName = createConstantsIFName(aPackage.getName()) + CONSTANTS_IF_POSTFIX;
+                String fileName = NAMER.nameForPackageHolder(aPackage.getName()) + CONSTANTS_IF_POSTFIX;
 
                 String javaFileName = fileName + JAVA_FILE_TYPE;
                 if(directory.findFile(javaFileName) == null)
@@ -229,30 +394,14 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         }, REFACTORING_NAME, null);
     }
 
-    private static String createConstantsIFName(String name)
-    {
-        String retVal = name;
-        int lastIndexOf= name.lastIndexOf(".");
-        if(lastIndexOf > 0)
-        {
-            retVal = name.substring(lastIndexOf+1, name.length());
-        }
-
-        String firstInitial = retVal.substring(0,1);
-        firstInitial = firstInitial.toUpperCase();
-        retVal = firstInitial + retVal.substring(1,retVal.length());
-
-        return retVal;
-    }
-
-    private void processClassHierarchyActionCommand(String constantName)
+    private void processClassHierarchyActionCommand(String constantName, HashSet<PsiExpression> occurrences)
     {
         try
         {
             PsiClass topLevelClass = PsiUtil.getTopLevelClass(myLiteralExpression);
             PsiClass baseClass = findBaseClass(topLevelClass);
 
-            HashSet<PsiExpression> tempElementsFound = findClassHierarchyActionOccurrences(baseClass);
+            HashSet<PsiExpression> tempElementsFound = occurrences != null ? occurrences : findClassHierarchyActionOccurrences(baseClass);
 
             createConstants(tempElementsFound, baseClass, PsiModifier.PROTECTED, false, constantName);
         }
@@ -264,43 +413,62 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
 
     private HashSet<PsiExpression> findClassHierarchyActionOccurrences(PsiClass baseClass)
     {
-        @SuppressWarnings({"ConstantConditions"})
-        SearchScope scope = GlobalSearchScope.moduleScope(ModuleUtil.findModuleForPsiElement(myLiteralExpression.getContainingFile()));
-        Query<PsiClass> query = ClassInheritorsSearch.search(baseClass, scope, INCLUDE_SUBPACKAGES, INCLUDE_SUBPACKAGES);
+        // subclasses may live in any module depending on the base class's one
+        GlobalSearchScope scope = ClassHierarchyCache.getHierarchyScope(baseClass);
+        Collection<PsiClass> inheritors = ClassHierarchyCache.getInheritors(baseClass);
 
-        HashSet<PsiExpression> elementsFound = new HashSet<PsiExpression>();
-        getOccurrencesFromFindAllQuery(query, elementsFound);
+        if(LiteralValueIndex.isAvailable(myProject))
+        {
+            // only walk the inheritors whose files contain the literal value at all
+            Set<VirtualFile> candidateFiles = LiteralValueIndex.getOccurrenceCounts(myLiteralExpression, scope).keySet();
+            ArrayList<PsiClass> candidateInheritors = new ArrayList<PsiClass>();
+            for(PsiClass inheritor : inheritors)
+            {
+                PsiFile containingFile = inheritor.getContainingFile();
+                if(containingFile != null && candidateFiles.contains(containingFile.getVirtualFile()))
+                {
+                    candidateInheritors.add(inheritor);
+                }
+            }
+            inheritors = candidateInheritors;
+        }
 
-        elementsFound.addAll(findClassActionOccurrences(baseClass));
+        ArrayList<PsiClass> classes = new ArrayList<PsiClass>(inheritors);
+        classes.add(baseClass);
+
+        HashSet<PsiExpression> elementsFound = new HashSet<PsiExpression>();
+        getOccurrencesFromClasses(classes, elementsFound);
 
         return elementsFound;
     }
 
-    private void getOccurrencesFromFindAllQuery(Query<PsiClass> query, HashSet<PsiExpression> elementsFound)
+    private void getOccurrencesFromClasses(Collection<PsiClass> classes, HashSet<PsiExpression> elementsFound)
     {
-        for(PsiClass psiClass : query.findAll())
-        {
-            ExpressionOccurenceManager occurrenceManager = new ExpressionOccurenceManager(myLiteralExpression, psiClass, null);
-            PsiExpression[] occurrences = occurrenceManager.getOccurences();
-            elementsFound.addAll(Arrays.asList(occurrences));
-        }
+        new ParallelOccurrenceSearch(myLiteralExpression, classes, myReportSearchProgress).search(elementsFound);
     }
 
-    static PsiClass findBaseClass(PsiClass topLevelClass)
+    /**
+     * @param reportSearchProgress false if the caller reports the progress of the search itself
+     */
+    void setReportSearchProgress(boolean reportSearchProgress)
     {
-        PsiClass retVal = topLevelClass;
+        myReportSearchProgress = reportSearchProgress;
+    }
 
-        PsiReferenceList extendsList = topLevelClass.getExtendsList();
-        PsiClass superClass = topLevelClass.getSuperClass();
-        if(extendsList != null && extendsList.getChildren().length > 0 && superClass != null && superClass.isWritable())
-        {
-            retVal = findBaseClass(superClass);
-        }
+    /**
+     * @return the number of fields written so far, constants that were reused or already existed are not counted
+     */
+    int getFieldsCreated()
+    {
+        return myFieldsCreated;
+    }
 
-        return retVal;
+    static PsiClass findBaseClass(PsiClass topLevelClass)
+    {
+        return ClassHierarchyCache.getBaseClass(topLevelClass);
     }
 
-    private static void createConstants(HashSet<PsiExpression> psiExpressions, PsiClass destinationClass, String visibility,
+    private void createConstants(HashSet<PsiExpression> psiExpressions, PsiClass destinationClass, String visibility,
                                         boolean isDestinationClassNew, String constantName)
     {
         PsiManager psiManager = destinationClass.getManager();
@@ -310,53 +478,166 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         boolean fieldAlreadyExists = false;
         PsiField field = getExistingField(psiExpressions, destinationClass);
         psiExpressions = cleanseFieldOccurrences(psiExpressions);
-        if(field == null)
+        PsiField reusableConstant = field == null ? findReusableConstant(psiExpressions) : null;
+        if(reusableConstant != null)
         {
-            //noinspection ConstantConditions
-            field = factory.createField(checkNameAvailability(constantName, destinationClass), psiExpressions.iterator().next().getType());
-            field.setInitializer(psiExpressions.iterator().next());
-            //noinspection ConstantConditions
-            field.getModifierList().setModifierProperty(visibility, true);
-            /*if(anyStaticOccurrences(psiExpressions))
+            // nothing to create or reformat, only the occurrences are replaced
+            PsiClass constantClass = reusableConstant.getContainingClass();
+            writeFieldToDestinationClass(constantClass, !isInside(constantClass, psiExpressions), reusableConstant, true, null, psiExpressions,
+                                         createExpressionsClassMap(psiExpressions));
+        }
+        else
+        {
+            if(field == null)
             {
+                long start = METRICS.start();
+                //noinspection ConstantConditions
+                field = factory.createField(getNameRegistry(destinationClass).reserve(constantName), psiExpressions.iterator().next().getType());
+                field.setInitializer(psiExpressions.iterator().next());
                 //noinspection ConstantConditions
-                field.getModifierList().setModifierProperty(PsiModifier.STATIC, true);
+                field.getModifierList().setModifierProperty(visibility, true);
+                /*if(anyStaticOccurrences(psiExpressions))
+                {
+                    //noinspection ConstantConditions
+                    field.getModifierList().setModifierProperty(PsiModifier.STATIC, true);
+                }
+    */
+                /*if(anyCaseStatementOccurrences(psiExpressions))
+                {
+                */    //noinspection ConstantConditions
+                    field.getModifierList().setModifierProperty(PsiModifier.STATIC, true);
+                    //noinspection ConstantConditions
+                    field.getModifierList().setModifierProperty(PsiModifier.FINAL, true);
+                /*}*/
+
+                METRICS.record(PhaseMetrics.Phase.FIELD_CREATION, start);
+
+                start = METRICS.start();
+                field = (PsiField)CodeStyleManager.getInstance(psiManager.getProject()).reformat(field);
+                METRICS.record(PhaseMetrics.Phase.REFORMAT, start);
+                myFieldsCreated++;
             }
-*/
-            /*if(anyCaseStatementOccurrences(psiExpressions))
+            else
             {
-            */    //noinspection ConstantConditions
-                field.getModifierList().setModifierProperty(PsiModifier.STATIC, true);
-                //noinspection ConstantConditions
-                field.getModifierList().setModifierProperty(PsiModifier.FINAL, true);
-            /*}*/
-
-            field = (PsiField)CodeStyleManager.getInstance(psiManager.getProject()).reformat(field);
-        }
-        else
-        {
-            fieldAlreadyExists = true;
-        }
+                fieldAlreadyExists = true;
+            }
 
-        PsiElement multiExpressionsAnchor =
-            RefactoringUtil.getAnchorElementForMultipleExpressions(psiExpressions.toArray(new PsiExpression[psiExpressions.size()]), null);
+            PsiElement multiExpressionsAnchor =
+                RefactoringUtil.getAnchorElementForMultipleExpressions(psiExpressions.toArray(new PsiExpression[psiExpressions.size()]), null);
 
-        if(multiExpressionsAnchor != null && destinationClass.equals(PsiUtil.getTopLevelClass(multiExpressionsAnchor)))
-        {
-            while(!multiExpressionsAnchor.getParent().equals(destinationClass))
+            if(multiExpressionsAnchor != null && destinationClass.equals(PsiUtil.getTopLevelClass(multiExpressionsAnchor)))
             {
-                multiExpressionsAnchor = multiExpressionsAnchor.getParent();
+                while(!multiExpressionsAnchor.getParent().equals(destinationClass))
+                {
+                    multiExpressionsAnchor = multiExpressionsAnchor.getParent();
+                }
+
+                if(destinationClass.getFields().length > 0)
+                {
+                    PsiField[] fields = destinationClass.getFields();
+                    multiExpressionsAnchor = fields[fields.length - 1];
+                }
             }
 
-            if(destinationClass.getFields().length > 0)
+            writeFieldToDestinationClass(destinationClass, isDestinationClassNew, field, fieldAlreadyExists, multiExpressionsAnchor, psiExpressions, createExpressionsClassMap(psiExpressions));
+        }
+    }
+
+    /**
+     * Looks up the constants that are initialized with the literal's value and have its type, and picks the nearest
+     * one every occurrence can access: one of the literal's own class first, then one of its package, then any other.
+     * Only the constants of the literal's class hierarchy are considered unless reusing the constants of the whole
+     * project is enabled, an unrelated class that happens to hold the same value is rarely the same constant.
+     * Booleans are left alone, a flag that happens to be true is no name for every true.
+     */
+    private PsiField findReusableConstant(HashSet<PsiExpression> psiExpressions)
+    {
+        PsiField retVal = null;
+        if(ConstantsExtractionInspection.constExtract_reuseExistingConstants && !psiExpressions.isEmpty() && myLiteralExpression.isValid()
+           && !PsiType.BOOLEAN.equals(myLiteralExpression.getType()) && LiteralValueIndex.isAvailable(myProject))
+        {
+            PsiResolveHelper resolveHelper = JavaPsiFacade.getInstance(myProject).getResolveHelper();
+            boolean isProjectWide = ConstantsExtractionInspection.constExtract_reuseProjectConstants;
+            PsiClass literalClass = PsiUtil.getTopLevelClass(myLiteralExpression);
+            int bestDistance = Integer.MAX_VALUE;
+            for(PsiField constant : ConstantFieldIndex.getConstantFields(myLiteralExpression, GlobalSearchScope.projectScope(myProject)))
             {
-                PsiField[] fields = destinationClass.getFields();
-                multiExpressionsAnchor = fields[fields.length - 1];
+                int distance = getDistance(constant);
+                boolean isNearer = distance < bestDistance
+                                   || (distance == bestDistance && getQualifiedName(constant).compareTo(getQualifiedName(retVal)) < 0);
+                if(isNearer && (isProjectWide || isInHierarchyOf(constant, literalClass)) && isUsableFrom(constant, psiExpressions, resolveHelper))
+                {
+                    retVal = constant;
+                    bestDistance = distance;
+                }
             }
         }
+        return retVal;
+    }
 
-        writeFieldToDestinationClass(destinationClass, isDestinationClassNew, field, fieldAlreadyExists, multiExpressionsAnchor, psiExpressions, createExpressionsClassMap(psiExpressions));
+    /**
+     * @return true if the constant is declared in the given class, in one of its supertypes or in another class
+     * extending the same base class
+     */
+    private static boolean isInHierarchyOf(PsiField constant, PsiClass topLevelClass)
+    {
+        PsiClass constantClass = constant.getContainingClass();
+        PsiClass constantTopLevelClass = PsiUtil.getTopLevelClass(constant);
+        return topLevelClass != null && constantClass != null && constantTopLevelClass != null
+               && (constantTopLevelClass.equals(topLevelClass) || topLevelClass.isInheritor(constantClass, true)
+                   || findBaseClass(constantTopLevelClass).equals(findBaseClass(topLevelClass)));
+    }
 
+    private int getDistance(PsiField constant)
+    {
+        int retVal = 2;
+        PsiFile constantFile = constant.getContainingFile();
+        PsiFile literalFile = myLiteralExpression.getContainingFile();
+        if(PsiUtil.getTopLevelClass(myLiteralExpression).equals(PsiUtil.getTopLevelClass(constant)))
+        {
+            retVal = 0;
+        }
+        else if(constantFile instanceof PsiJavaFile && literalFile instanceof PsiJavaFile
+                && ((PsiJavaFile)constantFile).getPackageName().equals(((PsiJavaFile)literalFile).getPackageName()))
+        {
+            retVal = 1;
+        }
+        return retVal;
+    }
+
+    private static String getQualifiedName(PsiField field)
+    {
+        PsiClass containingClass = field.getContainingClass();
+        String className = containingClass != null ? containingClass.getQualifiedName() : null;
+        return (className != null ? className : "") + "." + field.getName();
+    }
+
+    /**
+     * The occurrences are replaced by the constant's name qualified with the simple name of its class, which only
+     * resolves everywhere for top level classes.
+     */
+    private static boolean isUsableFrom(PsiField constant, HashSet<PsiExpression> psiExpressions, PsiResolveHelper resolveHelper)
+    {
+        PsiClass constantClass = constant.getContainingClass();
+        boolean retVal = constantClass != null && (constantClass.getContainingClass() == null || isInside(constantClass, psiExpressions));
+        Iterator<PsiExpression> iterator = psiExpressions.iterator();
+        while(retVal && iterator.hasNext())
+        {
+            PsiExpression occurrence = iterator.next();
+            retVal = resolveHelper.isAccessible(constantClass, occurrence, null) && resolveHelper.isAccessible(constant, occurrence, null);
+        }
+        return retVal;
+    }
+
+    private static boolean isInside(PsiClass psiClass, HashSet<PsiExpression> psiExpressions)
+    {
+        boolean retVal = true;
+        Iterator<PsiExpression> iterator = psiExpressions.iterator();
+        while(retVal && iterator.hasNext())
+        {
+            retVal = PsiTreeUtil.isAncestor(psiClass, iterator.next(), false);
+        }
+        return retVal;
     }
 
     private static boolean anyCaseStatementOccurrences(HashSet<PsiExpression> psiExpressions)
@@ -375,20 +656,33 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         return retVal;
     }
 
-    private static String checkNameAvailability(String constantName, PsiClass destinationClass)
+    /**
+     * The registry walks the fields of the class and its supers once per run rather than once per constant.
+     */
+    private ConstantNameRegistry getNameRegistry(PsiClass destinationClass)
     {
-        String retVal = constantName;
-        for(PsiField field : destinationClass.getAllFields())
+        ConstantNameRegistry retVal = myNameRegistries.get(destinationClass);
+        if(retVal == null)
         {
-            if(field.getName().equals(constantName))
+            ArrayList<String> fieldNames = new ArrayList<String>();
+            for(PsiField field : destinationClass.getAllFields())
             {
-                retVal += "_AUTO_CREATED";
-                break;
+                fieldNames.add(field.getName());
             }
+            retVal = new ConstantNameRegistry(fieldNames);
+            myNameRegistries.put(destinationClass, retVal);
         }
         return retVal;
     }
 
+    /**
+     * Shares the registries of the destination classes with the other handlers of the same run.
+     */
+    void setNameRegistries(Map<PsiClass, ConstantNameRegistry> nameRegistries)
+    {
+        myNameRegistries = nameRegistries;
+    }
+
     private static PsiField getExistingField(HashSet<PsiExpression> psiExpressions, PsiClass destinationClass)
     {
         PsiField retVal = null;
@@ -479,30 +773,89 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
                     }
                 }
 
+                long start = METRICS.start();
+                String replacementText = isDestinationClassNew ? destinationClass.getName() + "." + field.getName() : field.getName();
+                new DocumentOccurrenceReplacer(project).replace(psiExpressions, replacementText, field.getContext());
+
+                METRICS.record(PhaseMetrics.Phase.REPLACEMENT, start);
+
+                // the files are imported into once all their occurrences are replaced
+                start = METRICS.start();
+                LinkedHashSet<PsiJavaFile> filesToImportInto = new LinkedHashSet<PsiJavaFile>();
                 for (PsiExpression occurrence : psiExpressions)
                 {
-                    JavaPsiFacade javaFacade = JavaPsiFacade.getInstance(project);
-                    PsiElementFactory factory = javaFacade.getElementFactory();
-                    IntroduceVariableBase.replace(occurrence, factory.createExpressionFromText(
-                        isDestinationClassNew ? destinationClass.getName() + "." + field.getName() : field.getName(), field.getContext()),
-                                                  project);
-
                     PsiJavaFile occurrenceJavaFile = expressionsClassMap.get(occurrence);
                     if(!destinationFile.getPackageName().equals(occurrenceJavaFile.getPackageName()))
                     {
-                        //noinspection ConstantConditions
-                        occurrenceJavaFile.getImportList().add(JavaPsiFacade.getInstance(project).getElementFactory().createImportStatement(destinationClass));
+                        filesToImportInto.add(occurrenceJavaFile);
                     }
                 }
+
+                for(PsiJavaFile occurrenceJavaFile : filesToImportInto)
+                {
+                    addImportIfMissing(occurrenceJavaFile, destinationClass, destinationFile.getPackageName());
+                }
+                METRICS.record(PhaseMetrics.Phase.IMPORTS, start);
             }
         };
         
         createAndRunCommand(field.getProject(), action);
     }
 
-    static String extractDefaultFieldName(PsiExpression psiExpression)
+    private static void addImportIfMissing(PsiJavaFile javaFile, PsiClass importedClass, String importedPackageName)
     {
-        String retVal = "DEFAULT_FIELD_NAME";
+        PsiImportList importList = javaFile.getImportList();
+        String qualifiedName = importedClass.getQualifiedName();
+        if(importList != null && qualifiedName != null
+           && importList.findSingleClassImportStatement(qualifiedName) == null
+           && importList.findOnDemandImportStatement(importedPackageName) == null)
+        {
+            importList.add(JavaPsiFacade.getInstance(javaFile.getProject()).getElementFactory().createImportStatement(importedClass));
+        }
+    }
+
+    /**
+     * Reads the name suggested while the file was highlighted. If the file changed since, the name is computed
+     * again in a cancellable read action under a progress, and cancelling settles for a name made from the literal
+     * alone, so resolving the call the literal is passed to never freezes the UI. Must be called on the event
+     * dispatch thread. Quick fixes run inside the write action, which a background read action would wait for, so
+     * there the name is computed inline.
+     */
+    public static String getSuggestedName(final PsiLiteralExpression literalExpression)
+    {
+        String retVal = FileLiteralAnalysis.getCachedSuggestedName(literalExpression);
+        if(retVal == null && ApplicationManager.getApplication().isWriteAccessAllowed())
+        {
+            retVal = extractDefaultFieldName(literalExpression);
+        }
+        else if(retVal == null)
+        {
+            final String[] suggestedName = new String[1];
+            ProgressManager.getInstance().runProcessWithProgressSynchronously(new Runnable()
+            {
+                public void run()
+                {
+                    ApplicationManager.getApplication().runReadAction(new Runnable()
+                    {
+                        public void run()
+                        {
+                            if(literalExpression.isValid())
+                            {
+                                suggestedName[0] = extractDefaultFieldName(literalExpression);
+                            }
+                        }
+                    });
+                }
+            }, SUGGEST_NAME_TITLE, true, literalExpression.getProject());
+
+            retVal = suggestedName[0] != null ? suggestedName[0] : getQuickAndDirtyName(literalExpression, ConstantNameGenerator.DEFAULT_FIELD_NAME);
+        }
+        return retVal;
+    }
+
+    public static String extractDefaultFieldName(PsiExpression psiExpression)
+    {
+        String retVal = ConstantNameGenerator.DEFAULT_FIELD_NAME;
 
         PsiMethod psiMethod = null;
         psiMethod = resolveMethod(psiExpression, psiMethod);
@@ -510,14 +863,7 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         if(psiMethod != null && psiExpression.getParent() instanceof PsiExpressionList)
         {
             retVal = getParameterName(psiExpression, retVal, psiMethod);
-            String text = psiExpression.getText();
-            if(text.matches(".http.*"))
-            {
-                int lastIndex = text.lastIndexOf("/");
-                text = text.substring(lastIndex + 1, text.length());
-            }
-            retVal += "_" + text;
-            retVal = cleanSpecialCharacters(retVal);
+            retVal = NAMER.nameForArgument(retVal, psiExpression.getText());
         }
         else if(psiExpression != null)
         {
@@ -550,26 +896,12 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         try
         {
             PsiType type = psiExpression.getType();
-            if(type != PsiType.DOUBLE && type != PsiType.BYTE && type != PsiType.FLOAT && type != PsiType.INT && type != PsiType.LONG && type != PsiType.SHORT)
-            {
-                retVal = psiExpression.getText();
-                retVal = cleanSpecialCharacters(retVal);
-                if(retVal.length() == 0)
-                {
-                    retVal = psiExpression.getText();
-                    retVal = retVal.replaceAll("[\"]","");
-                    retVal = retVal.replaceAll("[\\\\]","SLASH");
-                    retVal = retVal.replaceAll("[=]", "EQUALS");
-                    retVal = retVal.replaceAll("[*]","ASTERISK");
-                    retVal = retVal.replaceAll("[(]","OPEN_PARENTHESIS");
-                    retVal = retVal.replaceAll("[)]","CLOSE_PARENTHESIS");
-                }
-            }
-            else
+            String numericTypeName = null;
+            if(type == PsiType.DOUBLE || type == PsiType.BYTE || type == PsiType.FLOAT || type == PsiType.INT || type == PsiType.LONG || type == PsiType.SHORT)
             {
-                //noinspection ConstantConditions
-                retVal = psiExpression.getType().getPresentableText().toUpperCase()+"_"+psiExpression.getText();
+                numericTypeName = type.getPresentableText();
             }
+            retVal = NAMER.nameForLiteral(psiExpression.getText(), numericTypeName);
         }
         catch(NullPointerException np)
         {
@@ -579,31 +911,6 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
         return retVal;
     }
 
-    private static String cleanSpecialCharacters(String retVal)
-    {
-        retVal = retVal.replaceAll(";","SEMICOLON");
-        retVal = retVal.replaceAll(",","COMMA");
-        retVal = retVal.replaceAll("[\']", "SINGLE_QUOTE");
-        retVal = retVal.replaceAll("[\\\\]","");
-        retVal = retVal.replaceAll("[\\\"=*():#$@!^]","");
-        retVal = retVal.replaceAll("[%]","_PERCENT");
-        retVal = retVal.replaceAll(" ","_");
-        retVal = retVal.replaceAll("[.]","_");
-        retVal = retVal.replaceAll("-","_");
-        retVal = retVal.replaceAll("/","_");
-        if(retVal.startsWith("_"))
-        {
-            retVal = retVal.substring(1);
-        }
-        if(Character.isDigit(retVal.charAt(0)))
-        {
-            retVal = "CONST_" + retVal;
-        }
-        retVal = retVal.trim();
-        retVal = retVal.toUpperCase();
-        return retVal;
-    }
-
     private static String getParameterName(PsiExpression psiExpression, String retVal, PsiMethod psiMethod)
     {
         final PsiElement navElement = psiMethod.getNavigationElement();
@@ -644,30 +951,122 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
     @Override
     protected UsageViewDescriptor createUsageViewDescriptor(UsageInfo[] usages)
     {
-        HashSet<PsiExpression> hashSet = findOccurrences();
-        return new IntroduceAndPropagateConstantViewDescriptor(hashSet);
+        ArrayList<PsiExpression> occurrences = new ArrayList<PsiExpression>(usages.length);
+        for(UsageInfo usage : usages)
+        {
+            PsiElement element = usage.getElement();
+            if(element instanceof PsiExpression)
+            {
+                occurrences.add((PsiExpression)element);
+            }
+        }
+        return new IntroduceAndPropagateConstantViewDescriptor(myLiteralExpression, occurrences, getDestinationName(lastActionCommand));
     }
 
+    /**
+     * The name of the class or interface the constant goes to, for the preview header.
+     */
+    private String getDestinationName(String actionCommand)
+    {
+        String retVal = null;
+        if(actionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND))
+        {
+            retVal = findBaseClass(PsiUtil.getTopLevelClass(myLiteralExpression)).getName();
+        }
+        else if(actionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND))
+        {
+            PsiPackage aPackage = retrievePackage();
+            retVal = NAMER.nameForPackageHolder(aPackage != null ? aPackage.getName() : "") + CONSTANTS_IF_POSTFIX;
+        }
+        else if(actionCommand.equals(IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND)
+                || actionCommand.equals(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND))
+        {
+            retVal = ConstantHolderLocator.getShortName(ConstantsExtractionInspection.constExtract_holderClass);
+        }
+        else
+        {
+            retVal = PsiUtil.getTopLevelClass(myLiteralExpression).getName();
+        }
+        return retVal;
+    }
+
+    /**
+     * The occurrences are searched once per run of the refactoring and kept as smart pointers, so the usage view
+     * descriptor, the usages and the write phase all share one search. Needs a read action.
+     */
     private HashSet<PsiExpression> findOccurrences()
     {
+        HashSet<PsiExpression> retVal = new HashSet<PsiExpression>();
+        if(myOccurrenceSnapshot == null)
+        {
+            retVal = findOccurrences(lastActionCommand);
+
+            SmartPointerManager pointerManager = SmartPointerManager.getInstance(myProject);
+            myOccurrenceSnapshot = new ArrayList<SmartPsiElementPointer<PsiExpression>>(retVal.size());
+            for(PsiExpression occurrence : retVal)
+            {
+                myOccurrenceSnapshot.add(pointerManager.createSmartPsiElementPointer(occurrence));
+            }
+            mySnapshotText = myLiteralExpression.isValid() ? myLiteralExpression.getText() : null;
+        }
+        else
+        {
+            for(SmartPsiElementPointer<PsiExpression> pointer : myOccurrenceSnapshot)
+            {
+                PsiExpression occurrence = pointer.getElement();
+                if(isSnapshotOccurrence(occurrence))
+                {
+                    retVal.add(occurrence);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * An occurrence restored from its pointer is stale once it no longer holds the text of the extracted literal.
+     */
+    private boolean isSnapshotOccurrence(PsiElement element)
+    {
+        return element instanceof PsiExpression && element.isValid() && element.getText().equals(mySnapshotText);
+    }
+
+    /**
+     * Runs the occurrence search of the given scope without touching the PSI, needs a read action.
+     */
+    HashSet<PsiExpression> findOccurrences(String actionCommand)
+    {
+        long start = METRICS.start();
         HashSet<PsiExpression> hashSet = new HashSet<PsiExpression>();
         try
         {
-            hashSet = findClassActionOccurrences(PsiUtil.getTopLevelClass(myLiteralExpression));
-
-            if(lastActionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND))
+            if(actionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND))
             {
                 hashSet = findClassHierarchyActionOccurrences(findBaseClass(PsiUtil.getTopLevelClass(myLiteralExpression)));
             }
-            else if(lastActionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND))
+            else if(actionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND))
             {
                 hashSet = findPackageActionOccurrences(retrievePackage());
             }
+            else if(actionCommand.equals(IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND)
+                    || actionCommand.equals(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND))
+            {
+                hashSet = findModulesActionOccurrences(getScopeModules(actionCommand));
+            }
+            else
+            {
+                hashSet = findClassActionOccurrences(PsiUtil.getTopLevelClass(myLiteralExpression));
+            }
         }
         catch(PsiInvalidElementAccessException psi)
         {
             // ignore - auto mode already replaced the element
         }
+        finally
+        {
+            METRICS.record(PhaseMetrics.Phase.OCCURRENCE_SEARCH, start);
+        }
+        METRICS.addOccurrences(actionCommand, hashSet.size());
         return hashSet;
     }
 
@@ -701,21 +1100,50 @@ public class IntroduceAndPropagateConstantHandler extends BaseRefactoringProcess
     @Override
     protected void performRefactoring(UsageInfo[] usages)
     {
-        if(lastActionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND))
+        // the usages come from the snapshot, minus whatever was excluded in the preview
+        HashSet<PsiExpression> occurrences = new HashSet<PsiExpression>();
+        for(UsageInfo usage : usages)
+        {
+            PsiElement element = usage.getElement();
+            if(isSnapshotOccurrence(element))
+            {
+                occurrences.add((PsiExpression)element);
+            }
+        }
+
+        if(!occurrences.isEmpty())
+        {
+            performAction(lastActionCommand, lastConstantName, occurrences);
+        }
+        LOG.info(METRICS.getSummary(myMetricsStart));
+    }
+
+    /**
+     * Extracts the constant for the given scope without going through the dialog and the usage view.
+     * @param occurrences the occurrences found beforehand by {@link #findOccurrences(String)}, null to search them now
+     */
+    void performAction(String actionCommand, String constantName, HashSet<PsiExpression> occurrences)
+    {
+        if(actionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND))
+        {
+            processClassHierarchyActionCommand(constantName, occurrences);
+        }
+        else if (actionCommand.equals(IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND))
         {
-            processClassHierarchyActionCommand(lastConstantName);
+            processClassActionCommand(constantName, occurrences);
         }
-        else if (lastActionCommand.equals(IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND))
+        else if (actionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND))
         {
-            processClassActionCommand(lastConstantName);
+            processPackageActionCommand(constantName, occurrences);
         }
-        else if (lastActionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND))
+        else if (actionCommand.equals(IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND)
+                 || actionCommand.equals(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND))
         {
-            processPackageActionCommand(lastConstantName);
+            processSharedHolderCommand(actionCommand, constantName, occurrences);
         }
         else
         {
-            Messages.showErrorDialog("Action setting "+lastActionCommand+" not found", "Missing action command");
+            Messages.showErrorDialog("Action setting "+actionCommand+" not found", "Missing action command");
         }
     }
 
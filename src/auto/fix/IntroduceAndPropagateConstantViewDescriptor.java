@@ -16,14 +16,12 @@
 package auto.fix;
 
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiExpression;
-import com.intellij.usageView.UsageInfo;
+import com.intellij.psi.*;
 import com.intellij.usageView.UsageViewDescriptor;
 import com.intellij.usageView.UsageViewUtil;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashSet;
+import java.util.*;
 
 /**
  * User: Call me Ismail
@@ -32,34 +30,108 @@ import java.util.HashSet;
  */
 public class IntroduceAndPropagateConstantViewDescriptor implements UsageViewDescriptor
 {
-    private HashSet<PsiExpression> myOccurrences;
+    private static final int FILES_SHOWN = 5;
 
-    public IntroduceAndPropagateConstantViewDescriptor(HashSet<PsiExpression> occurrences)
+    private final SmartPsiElementPointer<PsiLiteralExpression> myLiteralPointer;
+    private final String myDestinationName;
+    private final String myFileCounts;
+
+    /**
+     * Only the extracted literal is kept, behind a smart pointer, the occurrences are just counted per file: the usage
+     * view gets them from the usages and materializes their nodes as it needs them.
+     */
+    public IntroduceAndPropagateConstantViewDescriptor(PsiLiteralExpression literalExpression, Collection<PsiExpression> occurrences,
+                                                       String destinationName)
     {
-        myOccurrences = occurrences;
+        myLiteralPointer = SmartPointerManager.getInstance(literalExpression.getProject()).createSmartPsiElementPointer(literalExpression);
+        myDestinationName = destinationName;
+        myFileCounts = countPerFile(occurrences);
     }
 
-    @NotNull
-    public PsiElement[] getElements()
+    /**
+     * The counts are kept per file and the files shown with their package, or with their path when that isn't
+     * enough, so two files of the same name are two entries.
+     */
+    private static String countPerFile(Collection<PsiExpression> occurrences)
     {
-        PsiElement[] retVal = new PsiElement[myOccurrences.size()];
-        int i = 0;
-        for(PsiExpression expression : myOccurrences)
+        HashMap<PsiFile, Integer> countsByFile = new HashMap<PsiFile, Integer>();
+        for(PsiExpression occurrence : occurrences)
+        {
+            PsiFile file = occurrence.getContainingFile();
+            Integer count = countsByFile.get(file);
+            countsByFile.put(file, count == null ? 1 : count + 1);
+        }
+
+        final HashMap<String, Integer> counts = new HashMap<String, Integer>();
+        for(Map.Entry<PsiFile, Integer> entry : countsByFile.entrySet())
+        {
+            PsiFile file = entry.getKey();
+            String fileName = getQualifiedFileName(file);
+            // the same class in another module
+            if(counts.containsKey(fileName) && file != null && file.getVirtualFile() != null)
+            {
+                fileName = file.getVirtualFile().getPath();
+            }
+            counts.put(fileName, entry.getValue());
+        }
+
+        ArrayList<String> fileNames = new ArrayList<String>(counts.keySet());
+        Collections.sort(fileNames, new Comparator<String>()
+        {
+            public int compare(String o1, String o2)
+            {
+                int retVal = counts.get(o2) - counts.get(o1);
+                return retVal != 0 ? retVal : o1.compareTo(o2);
+            }
+        });
+
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < fileNames.size() && i < FILES_SHOWN; i++)
         {
-            retVal[i] = expression.getOriginalElement();
-            i++;
+            builder.append(i > 0 ? ", " : "").append(fileNames.get(i)).append(' ').append(counts.get(fileNames.get(i)));
+        }
+        if(fileNames.size() > FILES_SHOWN)
+        {
+            builder.append(", ...");
+        }
+        return builder.toString();
+    }
+
+    private static String getQualifiedFileName(PsiFile file)
+    {
+        String retVal = "";
+        if(file instanceof PsiJavaFile && ((PsiJavaFile)file).getPackageName().length() > 0)
+        {
+            retVal = ((PsiJavaFile)file).getPackageName() + "." + file.getName();
+        }
+        else if(file != null && file.getVirtualFile() != null)
+        {
+            retVal = file.getVirtualFile().getPath();
+        }
+        else if(file != null)
+        {
+            retVal = file.getName();
         }
         return retVal;
     }
 
+    @NotNull
+    public PsiElement[] getElements()
+    {
+        PsiLiteralExpression literalExpression = myLiteralPointer.getElement();
+        return literalExpression != null ? new PsiElement[]{literalExpression} : PsiElement.EMPTY_ARRAY;
+    }
+
     public String getProcessedElementsHeader()
     {
-        return StringUtil.capitalize(UsageViewUtil.getType(myOccurrences.iterator().next()));
+        PsiLiteralExpression literalExpression = myLiteralPointer.getElement();
+        String type = literalExpression != null ? UsageViewUtil.getType(literalExpression) : "literal expression";
+        return StringUtil.capitalize(type) + " to extract into " + myDestinationName;
     }
 
     public String getCodeReferencesText(int usagesCount, int filesCount)
     {
-        return "Extracted literal expressions to be replaced";
+        return "Extracted literal expressions to be replaced (" + usagesCount + " in " + filesCount + " files: " + myFileCounts + ")";
     }
 
     public String getCommentReferencesText(int usagesCount, int filesCount)
@@ -15,7 +15,10 @@
  */
 package auto.fix;
 
+import auto.inspection.ConstantsExtractionInspection;
 import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiExpression;
 import com.intellij.psi.PsiJavaFile;
@@ -42,6 +45,8 @@ public class IntroduceAndPropagateDialog extends JDialog implements ActionListen
     public static final String CLASS_ACTION_COMMAND = "classActionCommand";
     public static final String CLASS_HIERARCHY_COMMAND = "classHierarchyCommand";
     public static final String PACKAGE_ACTION_COMMAND = "packageActionCommand";
+    public static final String MODULE_ACTION_COMMAND = "moduleActionCommand";
+    public static final String PROJECT_ACTION_COMMAND = "projectActionCommand";
     private static final String OK_BUTTON_ACTION_COMMAND = "okButton";
     private JTextField constantNameField;
     private static final String PREVIEW_ACTION_COMMAND = "previewActionCommand";
@@ -60,7 +65,7 @@ public class IntroduceAndPropagateDialog extends JDialog implements ActionListen
     {
         JPanel mainPanel = new JPanel(new BorderLayout());
 
-        constantNameField = new JTextField(IntroduceAndPropagateConstantHandler.extractDefaultFieldName(myPsiExpression), 30);
+        constantNameField = new JTextField(IntroduceAndPropagateConstantHandler.getSuggestedName((PsiLiteralExpression)myPsiExpression), 30);
         JLabel constantNameLabel = new JLabel("Name for new field constant:");
         JPanel constantNamePanel = new JPanel(new GridLayout(2,1,5,5));
         constantNamePanel.add(constantNameLabel);
@@ -80,14 +85,28 @@ public class IntroduceAndPropagateDialog extends JDialog implements ActionListen
         JRadioButton packageScope = new JRadioButton("Package [" + ((PsiJavaFile)myPsiExpression.getContainingFile()).getPackageName()+ "]");
         packageScope.setActionCommand(PACKAGE_ACTION_COMMAND);
 
+        Module module = ModuleUtil.findModuleForPsiElement(myPsiExpression);
+        String holderName = ConstantsExtractionInspection.constExtract_holderClass;
+        JRadioButton moduleScope = new JRadioButton("Module [" + (module != null ? module.getName() : "") + ", holder: " + holderName + "]");
+        moduleScope.setActionCommand(MODULE_ACTION_COMMAND);
+        moduleScope.setEnabled(module != null);
+
+        JRadioButton projectScope = new JRadioButton("Project [holder: " + holderName + "]");
+        projectScope.setActionCommand(PROJECT_ACTION_COMMAND);
+        projectScope.setEnabled(module != null);
+
         scopeSelection.add(classScope);
         scopeSelection.add(classHierarchyScope);
         scopeSelection.add(packageScope);
+        scopeSelection.add(moduleScope);
+        scopeSelection.add(projectScope);
 
         JPanel radioPanel = new JPanel(new GridLayout(0,1));
         radioPanel.add(classScope);
         radioPanel.add(classHierarchyScope);
         radioPanel.add(packageScope);
+        radioPanel.add(moduleScope);
+        radioPanel.add(projectScope);
 
         mainPanel.add(radioPanel,BorderLayout.CENTER);
 
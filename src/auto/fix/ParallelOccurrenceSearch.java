@@ -0,0 +1,165 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.fix;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiInvalidElementAccessException;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.refactoring.util.occurences.ExpressionOccurenceManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches the occurrences of a literal in many classes at once. The classes are put in a shared queue that pooled
+ * workers and the calling thread drain together, each class in its own read action.
+ * <p/>
+ * The calling thread only waits for the classes to be searched, never for the workers themselves: a worker blocked
+ * on the read lock behind a pending write action hasn't taken a class yet, so the caller simply searches it instead.
+ */
+class ParallelOccurrenceSearch
+{
+    private static final int MIN_CLASSES_PER_WORKER = 4;
+    private static final long WAIT_MILLIS = 10;
+
+    private final PsiLiteralExpression myLiteralExpression;
+    private final boolean myReportProgress;
+    private final ConcurrentLinkedQueue<PsiClass> myQueue;
+    private final CountDownLatch myPending;
+    private final Set<PsiExpression> myFound = Collections.newSetFromMap(new ConcurrentHashMap<PsiExpression, Boolean>());
+    private final int myTotal;
+    private volatile boolean myCanceled = false;
+
+    ParallelOccurrenceSearch(PsiLiteralExpression literalExpression, Collection<PsiClass> classes, boolean reportProgress)
+    {
+        myLiteralExpression = literalExpression;
+        myReportProgress = reportProgress;
+        myQueue = new ConcurrentLinkedQueue<PsiClass>(classes);
+        myTotal = myQueue.size();
+        myPending = new CountDownLatch(myTotal);
+    }
+
+    /**
+     * Needs a read action, which is released by nobody but the caller, and honours the cancellation of the
+     * caller's progress indicator.
+     */
+    void search(Collection<PsiExpression> elementsFound)
+    {
+        Application application = ApplicationManager.getApplication();
+        // the workers can't get a read action while the caller writes
+        int workers = application.isWriteAccessAllowed() ? 0
+            : Math.min(Runtime.getRuntime().availableProcessors() - 1, myTotal / MIN_CLASSES_PER_WORKER);
+
+        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if(indicator != null && myReportProgress)
+        {
+            indicator.setIndeterminate(false);
+        }
+
+        for(int i = 0; i < workers; i++)
+        {
+            application.executeOnPooledThread(new Runnable()
+            {
+                public void run()
+                {
+                    ApplicationManager.getApplication().runReadAction(new Runnable()
+                    {
+                        public void run()
+                        {
+                            drainQueue(indicator);
+                        }
+                    });
+                }
+            });
+        }
+
+        try
+        {
+            drainQueue(indicator);
+            while(!myPending.await(WAIT_MILLIS, TimeUnit.MILLISECONDS))
+            {
+                checkCanceled(indicator);
+            }
+        }
+        catch(InterruptedException e)
+        {
+            myCanceled = true;
+            throw new ProcessCanceledException();
+        }
+        checkCanceled(indicator);
+
+        elementsFound.addAll(myFound);
+    }
+
+    private void drainQueue(ProgressIndicator indicator)
+    {
+        PsiClass psiClass;
+        while(!myCanceled && (psiClass = myQueue.poll()) != null)
+        {
+            try
+            {
+                if(indicator == null || !indicator.isCanceled())
+                {
+                    searchClass(psiClass);
+                    if(indicator != null && myReportProgress)
+                    {
+                        indicator.setFraction(1.0 - (double)myPending.getCount() / myTotal);
+                    }
+                }
+                else
+                {
+                    myCanceled = true;
+                }
+            }
+            finally
+            {
+                myPending.countDown();
+            }
+        }
+    }
+
+    private void searchClass(PsiClass psiClass)
+    {
+        try
+        {
+            ExpressionOccurenceManager occurrenceManager = new ExpressionOccurenceManager(myLiteralExpression, psiClass, null);
+            myFound.addAll(Arrays.asList(occurrenceManager.getOccurences()));
+        }
+        catch(PsiInvalidElementAccessException psi)
+        {
+            // ignore - the class has been changed since the search started
+        }
+    }
+
+    private void checkCanceled(ProgressIndicator indicator)
+    {
+        if(myCanceled || (indicator != null && indicator.isCanceled()))
+        {
+            myCanceled = true;
+            myQueue.clear();
+            throw new ProcessCanceledException();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.index;
+
+import auto.core.LiteralValueNormalizer;
+import com.intellij.lexer.JavaLexer;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.tree.ElementType;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Maps normalized literal values (see {@link LiteralValueNormalizer}) to the offsets of the names of the constants
+ * initialized with nothing but that literal: static final fields, and the fields of interfaces. The java stub
+ * index can't be extended, so the declarations are recognized from the lexer tokens and every hit is checked
+ * against the PSI when it is queried.
+ */
+public class ConstantFieldIndex extends FileBasedIndexExtension<String, int[]>
+{
+    public static final ID<String, int[]> NAME = ID.create("auto.index.ConstantFieldIndex");
+    private static final int VERSION = 1;
+
+    private final DataIndexer<String, int[], FileContent> myIndexer = new DataIndexer<String, int[], FileContent>()
+    {
+        @NotNull
+        public Map<String, int[]> map(FileContent inputData)
+        {
+            return indexConstants(inputData.getContentAsText());
+        }
+    };
+
+    @NotNull
+    @Override
+    public ID<String, int[]> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, int[], FileContent> getIndexer()
+    {
+        return myIndexer;
+    }
+
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor()
+    {
+        return new EnumeratorStringDescriptor();
+    }
+
+    @Override
+    public DataExternalizer<int[]> getValueExternalizer()
+    {
+        return LiteralValueIndex.OFFSETS_EXTERNALIZER;
+    }
+
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter()
+    {
+        return LiteralValueIndex.JAVA_INPUT_FILTER;
+    }
+
+    @Override
+    public boolean dependsOnFileContent()
+    {
+        return true;
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return VERSION;
+    }
+
+    /**
+     * Looks for <code>name = literal</code> followed by a semicolon or a comma, outside of any parentheses, in a
+     * declaration that is static and final or sits right in an interface body.
+     */
+    static Map<String, int[]> indexConstants(CharSequence text)
+    {
+        HashMap<String, List<Integer>> offsets = new HashMap<String, List<Integer>>();
+
+        // one entry per open brace, true for interface bodies
+        LinkedList<Boolean> braces = new LinkedList<Boolean>();
+        boolean interfacePending = false;
+        boolean isStatic = false;
+        boolean isFinal = false;
+        int parenthesesDepth = 0;
+        int nameOffset = -1;
+        boolean afterAssignment = false;
+        String literalKey = null;
+
+        Lexer lexer = new JavaLexer(LanguageLevel.HIGHEST);
+        lexer.start(text, 0, text.length(), 0);
+        IElementType tokenType;
+        for(; (tokenType = lexer.getTokenType()) != null; lexer.advance())
+        {
+            if(!ElementType.JAVA_COMMENT_OR_WHITESPACE_BIT_SET.contains(tokenType))
+            {
+                // match name = literal followed by ; or ,
+                if(literalKey != null)
+                {
+                    boolean isConstant = (isStatic && isFinal) || (!braces.isEmpty() && braces.getLast());
+                    if(parenthesesDepth == 0 && isConstant && (tokenType == JavaTokenType.SEMICOLON || tokenType == JavaTokenType.COMMA))
+                    {
+                        addOffset(offsets, literalKey, nameOffset);
+                    }
+                    literalKey = null;
+                    nameOffset = -1;
+                }
+                else if(afterAssignment)
+                {
+                    afterAssignment = false;
+                    char kind = LiteralValueIndex.getKind(tokenType);
+                    if(kind != 0)
+                    {
+                        literalKey = LiteralValueNormalizer.normalize(kind, text.subSequence(lexer.getTokenStart(), lexer.getTokenEnd()).toString());
+                    }
+                    if(literalKey == null)
+                    {
+                        nameOffset = -1;
+                    }
+                }
+                else if(tokenType == JavaTokenType.EQ && nameOffset >= 0)
+                {
+                    afterAssignment = true;
+                }
+                else
+                {
+                    nameOffset = tokenType == JavaTokenType.IDENTIFIER ? lexer.getTokenStart() : -1;
+                }
+
+                // keep track of the declaration and the body the tokens are in
+                if(tokenType == JavaTokenType.STATIC_KEYWORD)
+                {
+                    isStatic = true;
+                }
+                else if(tokenType == JavaTokenType.FINAL_KEYWORD)
+                {
+                    isFinal = true;
+                }
+                else if(tokenType == JavaTokenType.INTERFACE_KEYWORD)
+                {
+                    interfacePending = true;
+                }
+                else if(tokenType == JavaTokenType.LPARENTH)
+                {
+                    parenthesesDepth++;
+                }
+                else if(tokenType == JavaTokenType.RPARENTH)
+                {
+                    parenthesesDepth = Math.max(0, parenthesesDepth - 1);
+                }
+                else if(tokenType == JavaTokenType.LBRACE || tokenType == JavaTokenType.RBRACE || tokenType == JavaTokenType.SEMICOLON)
+                {
+                    if(tokenType == JavaTokenType.LBRACE)
+                    {
+                        braces.addLast(interfacePending);
+                        interfacePending = false;
+                    }
+                    else if(tokenType == JavaTokenType.RBRACE && !braces.isEmpty())
+                    {
+                        braces.removeLast();
+                    }
+                    isStatic = false;
+                    isFinal = false;
+                }
+            }
+        }
+
+        HashMap<String, int[]> retVal = new HashMap<String, int[]>(offsets.size());
+        for(Map.Entry<String, List<Integer>> entry : offsets.entrySet())
+        {
+            List<Integer> keyOffsets = entry.getValue();
+            int[] value = new int[keyOffsets.size()];
+            for(int i = 0; i < value.length; i++)
+            {
+                value[i] = keyOffsets.get(i);
+            }
+            retVal.put(entry.getKey(), value);
+        }
+        return retVal;
+    }
+
+    private static void addOffset(HashMap<String, List<Integer>> offsets, String key, int offset)
+    {
+        List<Integer> keyOffsets = offsets.get(key);
+        if(keyOffsets == null)
+        {
+            keyOffsets = new ArrayList<Integer>(1);
+            offsets.put(key, keyOffsets);
+        }
+        keyOffsets.add(offset);
+    }
+
+    /**
+     * Needs a read action and smart mode, see {@link LiteralValueIndex#isAvailable}.
+     * @return the constants of the scope initialized with the literal's value, of the literal's type
+     */
+    public static List<PsiField> getConstantFields(PsiLiteralExpression expression, GlobalSearchScope scope)
+    {
+        final ArrayList<PsiField> retVal = new ArrayList<PsiField>();
+        final String key = LiteralValueIndex.getKey(expression);
+        final PsiType type = expression.getType();
+        final PsiManager psiManager = expression.getManager();
+        if(key != null && type != null)
+        {
+            FileBasedIndex.getInstance().processValues(NAME, key, null, new FileBasedIndex.ValueProcessor<int[]>()
+            {
+                public boolean process(VirtualFile file, int[] value)
+                {
+                    PsiFile psiFile = psiManager.findFile(file);
+                    if(psiFile != null)
+                    {
+                        for(int offset : value)
+                        {
+                            PsiField field = PsiTreeUtil.getParentOfType(psiFile.findElementAt(offset), PsiField.class);
+                            if(field != null && isConstant(field) && type.equals(field.getType())
+                               && field.getInitializer() instanceof PsiLiteralExpression
+                               && key.equals(LiteralValueIndex.getKey((PsiLiteralExpression)field.getInitializer())))
+                            {
+                                retVal.add(field);
+                            }
+                        }
+                    }
+                    return true;
+                }
+            }, scope);
+        }
+        return retVal;
+    }
+
+    private static boolean isConstant(PsiField field)
+    {
+        return field.hasModifierProperty(PsiModifier.STATIC) && field.hasModifierProperty(PsiModifier.FINAL);
+    }
+}
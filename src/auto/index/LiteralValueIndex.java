@@ -0,0 +1,277 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.index;
+
+import auto.core.LiteralValueNormalizer;
+import com.intellij.lexer.JavaLexer;
+import com.intellij.lexer.Lexer;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Maps normalized literal values (see {@link LiteralValueNormalizer}) to the offsets they occur at in each java file.
+ * The length of the offsets array is the per-file occurrence count.
+ */
+public class LiteralValueIndex extends FileBasedIndexExtension<String, int[]>
+{
+    public static final ID<String, int[]> NAME = ID.create("auto.index.LiteralValueIndex");
+    private static final int VERSION = 1;
+
+    private final DataIndexer<String, int[], FileContent> myIndexer = new DataIndexer<String, int[], FileContent>()
+    {
+        @NotNull
+        public Map<String, int[]> map(FileContent inputData)
+        {
+            return indexLiterals(inputData.getContentAsText());
+        }
+    };
+
+    static final DataExternalizer<int[]> OFFSETS_EXTERNALIZER = new DataExternalizer<int[]>()
+    {
+        public void save(DataOutput out, int[] value) throws IOException
+        {
+            out.writeInt(value.length);
+            for(int offset : value)
+            {
+                out.writeInt(offset);
+            }
+        }
+
+        public int[] read(DataInput in) throws IOException
+        {
+            int[] retVal = new int[in.readInt()];
+            for(int i = 0; i < retVal.length; i++)
+            {
+                retVal[i] = in.readInt();
+            }
+            return retVal;
+        }
+    };
+
+    static final FileBasedIndex.InputFilter JAVA_INPUT_FILTER = new FileBasedIndex.InputFilter()
+    {
+        public boolean acceptInput(VirtualFile file)
+        {
+            return file.getFileType() == StdFileTypes.JAVA && file.isInLocalFileSystem();
+        }
+    };
+
+    @NotNull
+    @Override
+    public ID<String, int[]> getName()
+    {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, int[], FileContent> getIndexer()
+    {
+        return myIndexer;
+    }
+
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor()
+    {
+        return new EnumeratorStringDescriptor();
+    }
+
+    @Override
+    public DataExternalizer<int[]> getValueExternalizer()
+    {
+        return OFFSETS_EXTERNALIZER;
+    }
+
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter()
+    {
+        return JAVA_INPUT_FILTER;
+    }
+
+    @Override
+    public boolean dependsOnFileContent()
+    {
+        return true;
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return VERSION;
+    }
+
+    static Map<String, int[]> indexLiterals(CharSequence text)
+    {
+        HashMap<String, List<Integer>> offsets = new HashMap<String, List<Integer>>();
+
+        Lexer lexer = new JavaLexer(LanguageLevel.HIGHEST);
+        lexer.start(text, 0, text.length(), 0);
+        IElementType tokenType;
+        while((tokenType = lexer.getTokenType()) != null)
+        {
+            char kind = getKind(tokenType);
+            if(kind != 0)
+            {
+                String key = LiteralValueNormalizer.normalize(kind, text.subSequence(lexer.getTokenStart(), lexer.getTokenEnd()).toString());
+                if(key != null)
+                {
+                    List<Integer> keyOffsets = offsets.get(key);
+                    if(keyOffsets == null)
+                    {
+                        keyOffsets = new ArrayList<Integer>(1);
+                        offsets.put(key, keyOffsets);
+                    }
+                    keyOffsets.add(lexer.getTokenStart());
+                }
+            }
+            lexer.advance();
+        }
+
+        HashMap<String, int[]> retVal = new HashMap<String, int[]>(offsets.size());
+        for(Map.Entry<String, List<Integer>> entry : offsets.entrySet())
+        {
+            List<Integer> keyOffsets = entry.getValue();
+            int[] value = new int[keyOffsets.size()];
+            for(int i = 0; i < value.length; i++)
+            {
+                value[i] = keyOffsets.get(i);
+            }
+            retVal.put(entry.getKey(), value);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the {@link LiteralValueNormalizer} kind of the literal token, 0 for tokens that are not indexed
+     */
+    public static char getKind(IElementType tokenType)
+    {
+        char retVal = 0;
+        if(tokenType == JavaTokenType.INTEGER_LITERAL || tokenType == JavaTokenType.LONG_LITERAL)
+        {
+            retVal = LiteralValueNormalizer.INTEGRAL_KIND;
+        }
+        else if(tokenType == JavaTokenType.FLOAT_LITERAL || tokenType == JavaTokenType.DOUBLE_LITERAL)
+        {
+            retVal = LiteralValueNormalizer.FLOATING_KIND;
+        }
+        else if(tokenType == JavaTokenType.STRING_LITERAL)
+        {
+            retVal = LiteralValueNormalizer.STRING_KIND;
+        }
+        else if(tokenType == JavaTokenType.CHARACTER_LITERAL)
+        {
+            retVal = LiteralValueNormalizer.CHARACTER_KIND;
+        }
+        else if(tokenType == JavaTokenType.TRUE_KEYWORD || tokenType == JavaTokenType.FALSE_KEYWORD)
+        {
+            retVal = LiteralValueNormalizer.BOOLEAN_KIND;
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the {@link LiteralValueNormalizer} kind of the literal, 0 for literals that are not indexed (null keyword)
+     */
+    public static char getKind(PsiLiteralExpression expression)
+    {
+        char retVal = 0;
+        PsiElement firstChild = expression.getFirstChild();
+        if(firstChild instanceof PsiJavaToken)
+        {
+            retVal = getKind(((PsiJavaToken)firstChild).getTokenType());
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the index key for the literal, or null for literals that are not indexed (null keyword)
+     */
+    public static String getKey(PsiLiteralExpression expression)
+    {
+        String retVal = null;
+        char kind = getKind(expression);
+        if(kind != 0)
+        {
+            retVal = LiteralValueNormalizer.normalize(kind, expression.getFirstChild().getText());
+        }
+        return retVal;
+    }
+
+    /**
+     * The index can't be queried while the project is being indexed, callers fall back to walking the PSI.
+     */
+    public static boolean isAvailable(Project project)
+    {
+        return !DumbService.getInstance(project).isDumb();
+    }
+
+    /**
+     * @return the number of occurrences of the literal's value in each file of the scope that contains it at least once
+     */
+    public static Map<VirtualFile, Integer> getOccurrenceCounts(PsiLiteralExpression expression, GlobalSearchScope scope)
+    {
+        final HashMap<VirtualFile, Integer> retVal = new HashMap<VirtualFile, Integer>();
+        String key = getKey(expression);
+        if(key != null)
+        {
+            FileBasedIndex.getInstance().processValues(NAME, key, null, new FileBasedIndex.ValueProcessor<int[]>()
+            {
+                public boolean process(VirtualFile file, int[] value)
+                {
+                    Integer count = retVal.get(file);
+                    retVal.put(file, count == null ? value.length : count + value.length);
+                    return true;
+                }
+            }, scope);
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the java files of the scope that contain the literal's value, the only ones worth walking for occurrences
+     */
+    public static List<PsiJavaFile> getCandidateFiles(PsiLiteralExpression expression, GlobalSearchScope scope)
+    {
+        ArrayList<PsiJavaFile> retVal = new ArrayList<PsiJavaFile>();
+        PsiManager psiManager = expression.getManager();
+        for(VirtualFile virtualFile : getOccurrenceCounts(expression, scope).keySet())
+        {
+            PsiFile psiFile = psiManager.findFile(virtualFile);
+            if(psiFile instanceof PsiJavaFile)
+            {
+                retVal.add((PsiJavaFile)psiFile);
+            }
+        }
+        return retVal;
+    }
+}
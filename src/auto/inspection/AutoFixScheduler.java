@@ -0,0 +1,338 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.inspection;
+
+import auto.fix.BatchConstantsExtractor;
+import auto.fix.ConstantsExtractorFix;
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.actions.RunInspectionIntention;
+import com.intellij.codeInspection.ex.InspectionManagerEx;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.UserDataHolderEx;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.*;
+import com.intellij.util.Alarm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the auto mode and auto fix requests the inspection makes while highlighting and runs them once the file
+ * has been left alone for a moment. Requests for the same file are merged into one pending entry, a literal already
+ * pending is not queued again, every new request pushes its run back, and literals that are gone by then are dropped. A file's auto fixes run as one batched
+ * command, its inspection is rerun at most once.
+ */
+public class AutoFixScheduler
+{
+    private static final Key<AutoFixScheduler> SCHEDULER = Key.create("auto.inspection.AutoFixScheduler");
+    private static final Logger LOG = Logger.getInstance("#auto.inspection.AutoFixScheduler");
+    private static final int DELAY = 750;
+
+    private final Project myProject;
+    private final Alarm myAlarm;
+    private final HashMap<VirtualFile, PendingFile> myPendingFiles = new HashMap<VirtualFile, PendingFile>();
+    private final AtomicInteger myMerged = new AtomicInteger();
+    private final AtomicInteger myDropped = new AtomicInteger();
+    private final AtomicInteger myExecuted = new AtomicInteger();
+
+    private AutoFixScheduler(Project project)
+    {
+        myProject = project;
+        myAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, project);
+    }
+
+    public static AutoFixScheduler getInstance(Project project)
+    {
+        AutoFixScheduler retVal = project.getUserData(SCHEDULER);
+        if(retVal == null)
+        {
+            retVal = new AutoFixScheduler(project);
+            if(project instanceof UserDataHolderEx)
+            {
+                retVal = ((UserDataHolderEx)project).putUserDataIfAbsent(SCHEDULER, retVal);
+            }
+            else
+            {
+                project.putUserData(SCHEDULER, retVal);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Queues the extraction of the literal with the auto fix settings. Can be called from any thread.
+     */
+    public void scheduleFix(PsiLiteralExpression expression)
+    {
+        schedule(expression, true);
+    }
+
+    /**
+     * Queues a rerun of the inspection on the literal's file. Can be called from any thread.
+     */
+    public void scheduleRerun(PsiLiteralExpression expression)
+    {
+        schedule(expression, false);
+    }
+
+    private void schedule(PsiLiteralExpression expression, boolean fix)
+    {
+        PsiFile containingFile = expression.getContainingFile();
+        VirtualFile file = containingFile != null ? containingFile.getVirtualFile() : null;
+        if(file != null)
+        {
+            PendingFile pendingFile;
+            synchronized(myPendingFiles)
+            {
+                pendingFile = myPendingFiles.get(file);
+                if(pendingFile == null)
+                {
+                    pendingFile = new PendingFile(file);
+                    myPendingFiles.put(file, pendingFile);
+                }
+
+                boolean queued;
+                if(fix)
+                {
+                    queued = pendingFile.addLiteral(expression);
+                }
+                else
+                {
+                    queued = pendingFile.myRerunPointer == null;
+                    if(queued)
+                    {
+                        pendingFile.myRerunPointer = createPointer(expression);
+                    }
+                }
+
+                if(!queued)
+                {
+                    myMerged.incrementAndGet();
+                }
+            }
+
+            myAlarm.cancelRequest(pendingFile);
+            myAlarm.addRequest(pendingFile, DELAY);
+        }
+    }
+
+    private SmartPsiElementPointer<PsiLiteralExpression> createPointer(PsiLiteralExpression expression)
+    {
+        return SmartPointerManager.getInstance(myProject).createSmartPsiElementPointer(expression);
+    }
+
+    /**
+     * @return the requests for a literal or a rerun that was already pending
+     */
+    public int getMergedCount()
+    {
+        return myMerged.get();
+    }
+
+    /**
+     * @return the requests dropped because their literal was gone by the time they were due
+     */
+    public int getDroppedCount()
+    {
+        return myDropped.get();
+    }
+
+    /**
+     * @return the literals extracted plus the inspection reruns done
+     */
+    public int getExecutedCount()
+    {
+        return myExecuted.get();
+    }
+
+    private void run(PendingFile pendingFile)
+    {
+        List<SmartPsiElementPointer<PsiLiteralExpression>> pointers;
+        SmartPsiElementPointer<PsiLiteralExpression> rerunPointer;
+        synchronized(myPendingFiles)
+        {
+            // the file may already have a newer entry, queued after this one was taken off by the alarm
+            if(myPendingFiles.get(pendingFile.myFile) == pendingFile)
+            {
+                myPendingFiles.remove(pendingFile.myFile);
+            }
+            pointers = new ArrayList<SmartPsiElementPointer<PsiLiteralExpression>>(pendingFile.myLiterals.values());
+            rerunPointer = pendingFile.myRerunPointer;
+            // a request that slipped in while the alarm fired queues the entry once more, it must find it empty
+            pendingFile.myLiterals.clear();
+            pendingFile.myRerunPointer = null;
+        }
+
+        if(!myProject.isDisposed())
+        {
+            PsiDocumentManager.getInstance(myProject).commitAllDocuments();
+
+            LinkedHashSet<PsiLiteralExpression> literals = new LinkedHashSet<PsiLiteralExpression>();
+            for(SmartPsiElementPointer<PsiLiteralExpression> pointer : pointers)
+            {
+                PsiLiteralExpression literal = pointer.getElement();
+                if(literal != null && literal.isValid())
+                {
+                    literals.add(literal);
+                }
+                else
+                {
+                    myDropped.incrementAndGet();
+                }
+            }
+
+            if(!literals.isEmpty())
+            {
+                applyFixes(literals);
+            }
+
+            if(rerunPointer != null)
+            {
+                PsiLiteralExpression literal = rerunPointer.getElement();
+                if(literal != null && literal.isValid())
+                {
+                    rerunInspection(literal.getContainingFile());
+                }
+                else
+                {
+                    myDropped.incrementAndGet();
+                }
+            }
+
+            LOG.debug("merged " + myMerged.get() + ", dropped " + myDropped.get() + ", executed " + myExecuted.get());
+        }
+    }
+
+    /**
+     * With suggested names all literals go through one batch, otherwise each of them has to ask for its name.
+     */
+    private void applyFixes(LinkedHashSet<PsiLiteralExpression> literals)
+    {
+        String actionCommand = ConstantsExtractionInspection.getAutoFixActionCommand();
+        if(ConstantsExtractionInspection.constExtract_useSuggestedName)
+        {
+            BatchConstantsExtractor extractor = new BatchConstantsExtractor(myProject, actionCommand);
+            for(PsiLiteralExpression literal : literals)
+            {
+                extractor.addLiteral(literal, FileLiteralAnalysis.getCachedSuggestedName(literal));
+            }
+            extractor.run();
+        }
+        else
+        {
+            ConstantsExtractorFix fix = new ConstantsExtractorFix();
+            for(PsiLiteralExpression literal : literals)
+            {
+                if(literal.isValid())
+                {
+                    fix.applyDefaultFix(myProject, literal, actionCommand, false);
+                }
+            }
+        }
+        myExecuted.addAndGet(literals.size());
+    }
+
+    private void rerunInspection(PsiFile containingFile)
+    {
+        RunInspectionIntention.rerunInspection(InspectionProjectProfileManager.getInstance(myProject).getInspectionProfile()
+                                                   .getInspectionTool(ConstantsExtractionInspection.SHORT_NAME, containingFile),
+                                               (InspectionManagerEx)InspectionManagerEx.getInstance(myProject),
+                                               new AnalysisScope(containingFile),
+                                               containingFile);
+        myExecuted.incrementAndGet();
+    }
+
+    /**
+     * The requests pending for one file, doubles as the alarm request that runs them. The literals are keyed by their
+     * text range, so every highlighting pass finds the pointers of the previous one instead of adding new ones.
+     */
+    private class PendingFile implements Runnable
+    {
+        private final VirtualFile myFile;
+        private final LinkedHashMap<TextRange, SmartPsiElementPointer<PsiLiteralExpression>> myLiterals =
+            new LinkedHashMap<TextRange, SmartPsiElementPointer<PsiLiteralExpression>>();
+        private SmartPsiElementPointer<PsiLiteralExpression> myRerunPointer;
+        private long myKeyedStamp = -1;
+
+        private PendingFile(VirtualFile file)
+        {
+            myFile = file;
+        }
+
+        /**
+         * Creates a pointer only for a literal that isn't pending yet. An edit before the literals shifts their
+         * ranges, the first miss after the file changed keys the pointers by their ranges again and drops those that
+         * are gone.
+         *
+         * @return false if the literal was already pending
+         */
+        private boolean addLiteral(PsiLiteralExpression expression)
+        {
+            TextRange range = expression.getTextRange();
+            long stamp = expression.getContainingFile().getModificationStamp();
+            boolean retVal = !isPending(range, expression);
+            if(retVal && stamp != myKeyedStamp)
+            {
+                rekeyLiterals();
+                retVal = !isPending(range, expression);
+            }
+            myKeyedStamp = stamp;
+
+            if(retVal)
+            {
+                myLiterals.put(range, createPointer(expression));
+            }
+            return retVal;
+        }
+
+        private boolean isPending(TextRange range, PsiLiteralExpression expression)
+        {
+            SmartPsiElementPointer<PsiLiteralExpression> pointer = myLiterals.get(range);
+            return pointer != null && pointer.getElement() == expression;
+        }
+
+        private void rekeyLiterals()
+        {
+            ArrayList<SmartPsiElementPointer<PsiLiteralExpression>> pointers = new ArrayList<SmartPsiElementPointer<PsiLiteralExpression>>(myLiterals.values());
+            myLiterals.clear();
+            for(SmartPsiElementPointer<PsiLiteralExpression> pointer : pointers)
+            {
+                PsiLiteralExpression literal = pointer.getElement();
+                if(literal != null && literal.isValid())
+                {
+                    myLiterals.put(literal.getTextRange(), pointer);
+                }
+                else
+                {
+                    myDropped.incrementAndGet();
+                }
+            }
+        }
+
+        public void run()
+        {
+            AutoFixScheduler.this.run(this);
+        }
+    }
+}
@@ -15,24 +15,23 @@
  */
 package auto.inspection;
 
+import auto.core.LiteralRuleSet;
+import auto.core.OutputSinkRegistry;
+import auto.core.PhaseMetrics;
 import auto.fix.ConstantsExtractorFix;
 import auto.fix.IntroduceAndPropagateDialog;
-import com.intellij.analysis.AnalysisScope;
 import com.intellij.codeInspection.BaseJavaLocalInspectionTool;
 import com.intellij.codeInspection.ProblemHighlightType;
 import com.intellij.codeInspection.ProblemsHolder;
-import com.intellij.codeInspection.actions.RunInspectionIntention;
-import com.intellij.codeInspection.ex.InspectionManagerEx;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.project.Project;
-import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.UserDataHolderEx;
 import com.intellij.psi.*;
-import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * User: Call me Ismail
@@ -47,38 +46,96 @@ public class ConstantsExtractionInspection extends BaseJavaLocalInspectionTool
     public static boolean classActionCommand = true;
     public static boolean classHierarchyActionCommand = false;
     public static boolean packageActionCommand = false;
-    private static boolean detected = false;
-    private static PsiClass lastDetectedClass = null;
+    public static boolean moduleActionCommand = false;
+    public static boolean projectActionCommand = false;
+    public static String constExtract_outputSinks = OutputSinkRegistry.DEFAULT_SINKS;
+    public static boolean constExtract_reuseExistingConstants = true;
+    public static boolean constExtract_reuseProjectConstants = false;
+    public static String constExtract_holderClass = "constants.SharedConstants";
+    public static String constExtract_ignoredValues = LiteralRuleSet.DEFAULT_IGNORED_VALUES;
+    public static String constExtract_allowPattern = "";
+    public static String constExtract_denyPattern = "";
+    public static String constExtract_typePolicies = LiteralRuleSet.DEFAULT_TYPE_POLICIES;
+    public static int constExtract_minOccurrences = LiteralRuleSet.DEFAULT_MIN_OCCURRENCES;
+    public static String constExtract_occurrenceScope = LiteralRuleSet.OccurrenceScope.FILE.name();
+    static final String SHORT_NAME = "ConstantsExtraction";
+    private static final Key<AtomicReference<PsiClass>> LAST_DETECTED_CLASS = Key.create("auto.inspection.ConstantsExtractionInspection.lastDetectedClass");
 
     @Override
     public JComponent createOptionsPanel()
     {
-        return new ConstantsExtractionOptionsPanel(this, "constExtract_autoEnabled", "constExtract_autoFix","constExtract_useSuggestedName","classActionCommand","classHierarchyActionCommand","packageActionCommand");
+        return new ConstantsExtractionOptionsPanel(this, "constExtract_autoEnabled", "constExtract_autoFix","constExtract_useSuggestedName","classActionCommand","classHierarchyActionCommand","packageActionCommand",
+                                                   "moduleActionCommand", "projectActionCommand",
+                                                   "constExtract_outputSinks", "constExtract_reuseExistingConstants", "constExtract_reuseProjectConstants",
+                                                   "constExtract_holderClass",
+                                                   "constExtract_ignoredValues", "constExtract_allowPattern", "constExtract_denyPattern",
+                                                   "constExtract_typePolicies", "constExtract_minOccurrences", "constExtract_occurrenceScope");
     }
 
-    private synchronized static void setDetected(PsiLiteralExpression expression)
+    /**
+     * Auto mode reacts to the first literal found in a top level class, and again whenever highlighting moves on to
+     * another top level class and comes back. The last class that triggered it is kept in the project's user data
+     * and swapped with a compare-and-set, so highlighting threads never lock and nothing outlives the project.
+     * @return true if the literal's top level class isn't the one that triggered auto mode last
+     */
+    private static boolean detect(PsiLiteralExpression expression)
     {
-        detected = true;
-        lastDetectedClass = PsiUtil.getTopLevelClass(expression);
+        PsiClass topLevelClass = PsiUtil.getTopLevelClass(expression);
+        Project project = expression.getProject();
+
+        AtomicReference<PsiClass> lastDetectedClass = project.getUserData(LAST_DETECTED_CLASS);
+        if(lastDetectedClass == null)
+        {
+            lastDetectedClass = new AtomicReference<PsiClass>();
+            if(project instanceof UserDataHolderEx)
+            {
+                lastDetectedClass = ((UserDataHolderEx)project).putUserDataIfAbsent(LAST_DETECTED_CLASS, lastDetectedClass);
+            }
+            else
+            {
+                project.putUserData(LAST_DETECTED_CLASS, lastDetectedClass);
+            }
+        }
+
+        PsiClass previous = lastDetectedClass.get();
+        return previous != topLevelClass && lastDetectedClass.compareAndSet(previous, topLevelClass);
     }
 
-    private synchronized static boolean isDetected()
+
+    /**
+     * @return the rules of the options panel, compiled again only after they changed
+     */
+    public static LiteralRuleSet getRules()
     {
-        return detected;
+        return LiteralRuleSet.getInstance(constExtract_ignoredValues, constExtract_allowPattern, constExtract_denyPattern, constExtract_typePolicies,
+                                          constExtract_minOccurrences, constExtract_occurrenceScope);
     }
 
-    private synchronized static void checkDetected(PsiLiteralExpression expression)
+    /**
+     * @return the scope selected in the options panel for applying fixes without the dialog
+     */
+    public static String getAutoFixActionCommand()
     {
-        if(detected)
+        String retVal = IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND;
+        if(classHierarchyActionCommand)
         {
-            if(!lastDetectedClass.equals(PsiUtil.getTopLevelClass(expression)))
-            {
-                detected = false;
-            }
+            retVal = IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND;
         }
+        else if(packageActionCommand)
+        {
+            retVal = IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND;
+        }
+        else if(moduleActionCommand)
+        {
+            retVal = IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND;
+        }
+        else if(projectActionCommand)
+        {
+            retVal = IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND;
+        }
+        return retVal;
     }
 
-
     @Nls
     @NotNull
     @Override
@@ -99,7 +156,7 @@ public class ConstantsExtractionInspection extends BaseJavaLocalInspectionTool
     @Override
     public String getShortName()
     {
-        return "ConstantsExtraction";
+        return SHORT_NAME;
     }
 
     @Override
@@ -119,6 +176,9 @@ public class ConstantsExtractionInspection extends BaseJavaLocalInspectionTool
     {
         private ProblemsHolder problemsHolder;
         private boolean isOnTheFly;
+        private FileLiteralAnalysis myAnalysis;
+        private OccurrenceThreshold myThreshold;
+        private final ConstantsExtractorFix myFix = new ConstantsExtractorFix();
 
         public ConstantsExpressionVisitor(ProblemsHolder holder, boolean onTheFly)
         {
@@ -135,190 +195,66 @@ public class ConstantsExtractionInspection extends BaseJavaLocalInspectionTool
         @Override
         public void visitLiteralExpression(final PsiLiteralExpression expression)
         {
-            if(!expressionIsEmptyString(expression) && !isParentSystemPrint(expression)
-                && !isNullKeyword(expression) && !isLocalVarDeclaration(expression) && !isLabelOrQuery(expression)
-                && !isBooleanAssignmentExpression(expression) && !isAnnotationLiteral(expression))
+            // the analysis of the file is timed on its own, the first literal of the file runs it
+            FileLiteralAnalysis analysis = getAnalysis(expression);
+            long start = PhaseMetrics.getInstance().start();
+            try
             {
-                final ConstantsExtractorFix constantsExtractorFix = new ConstantsExtractorFix(expression);
-
-                checkDetected(expression);
-
-                // check parent is not already a field
-                if(PsiTreeUtil.getParentOfType(expression, PsiField.class) == null)
+                FileLiteralAnalysis.LiteralInfo literalInfo = analysis.getLiteralInfo(expression);
+                if(literalInfo != null && literalInfo.isCandidate() && myThreshold.isMet(expression, analysis))
                 {
-                    if (constExtract_autoFix || (constExtract_autoEnabled && !isDetected()))
+                    if (constExtract_autoFix || (constExtract_autoEnabled && detect(expression)))
                     {
-                        if(!constExtract_autoFix)
-                            setDetected(expression);
-                        applyFixNow(expression, new ConstantsExtractorFix(expression));
+                        applyFixNow(expression);
                     }
                     else
                     {
-                        registerProblem(expression, constantsExtractorFix);
+                        registerProblem(expression, myFix);
                     }
                 }
             }
-        }
-
-        private void applyFixNow(final PsiLiteralExpression expression, final ConstantsExtractorFix fixNow)
-        {
-            final Project project = expression.getProject();
-            ApplicationManager.getApplication().invokeLater(new Runnable()
+            finally
             {
-                public void run()
-                {
-                    if(constExtract_autoFix)
-                    {
-                        String command = IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND;
-                        if(classHierarchyActionCommand)
-                        {
-                            command = IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND;
-                        }
-                        else if(packageActionCommand)
-                        {
-                            command = IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND;
-                        }
-
-                        fixNow.applyDefaultFix(project, command, constExtract_useSuggestedName);
-
-                    }
-                    else
-                    {
-                        PsiFile containingFile = expression.getContainingFile();
-                        RunInspectionIntention.rerunInspection(InspectionProjectProfileManager.getInstance(project).getInspectionProfile().getInspectionTool(getShortName(),containingFile),
-                                                                   (InspectionManagerEx)InspectionManagerEx.getInstance(project),
-                                                                   new AnalysisScope(containingFile),
-                                                                   containingFile);
-                    }
-                }
-            });
+                PhaseMetrics.getInstance().record(PhaseMetrics.Phase.INSPECTION, start);
+            }
         }
 
-        private void registerProblem(PsiLiteralExpression expression, ConstantsExtractorFix fixNow)
+        private FileLiteralAnalysis getAnalysis(PsiLiteralExpression expression)
         {
-            problemsHolder.registerProblem(expression, "Unassigned literal expression", ProblemHighlightType.GENERIC_ERROR_OR_WARNING,fixNow);
-        }
-
-        @Override
-        public void visitElement(PsiElement element)
-        {
-            if(element instanceof PsiLiteral)
+            if(myAnalysis == null)
             {
-                problemsHolder.registerProblem(element, "Just a PsiLiteral . . .", ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+                myAnalysis = FileLiteralAnalysis.getInstance(expression.getContainingFile(), OutputSinkRegistry.getInstance(constExtract_outputSinks), getRules());
+                myThreshold = new OccurrenceThreshold(expression.getProject());
             }
+            return myAnalysis;
         }
-    }
-
-    private static boolean isAnnotationLiteral(PsiLiteralExpression expression)
-    {
-        return PsiTreeUtil.getParentOfType(expression, PsiAnnotation.class) != null;
-    }
-
-    private static boolean isBooleanAssignmentExpression(PsiLiteralExpression expression)
-    {
-        boolean retVal = false;
-        if(expression.getType().equals(PsiType.BOOLEAN))
-        {
-            retVal = PsiTreeUtil.getParentOfType(expression, PsiAssignmentExpression.class) != null
-                    || PsiTreeUtil.getParentOfType(expression, PsiLocalVariable.class) != null
-                    || expression.getParent() instanceof PsiReturnStatement;
-        }
-        return retVal;
-    }
 
-    private static boolean isLabelOrQuery(PsiLiteralExpression expression)
-    {
-        boolean retVal = false;
-        PsiElement firstChild = expression.getFirstChild();
-        if(firstChild instanceof PsiJavaToken)
+        private void applyFixNow(PsiLiteralExpression expression)
         {
-            if(((PsiJavaToken)firstChild).getTokenType().toString().equals(JavaTokenType.STRING_LITERAL.toString()))
+            AutoFixScheduler scheduler = AutoFixScheduler.getInstance(expression.getProject());
+            if(constExtract_autoFix)
             {
-                retVal = expression.getText().indexOf(" ") > -1;
-                if(!retVal)
-                {
-                    PsiElement parent = expression.getParent();
-                    if(parent != null)
-                    {
-                        boolean questFound = false;
-                        boolean colonFound = false;
-                        boolean plusFound = false;
-                        for(PsiElement child : parent.getChildren())
-                        {
-                            if(child instanceof PsiJavaToken)
-                            {
-                                String tokenTypeString = ((PsiJavaToken)child).getTokenType().toString();
-                                if(tokenTypeString.equals(JavaTokenType.PLUS.toString()))
-                                    plusFound = true;
-                                else
-                                {
-                                    if(tokenTypeString.equals(JavaTokenType.QUEST.toString()))
-                                        questFound = true;
-                                    else if(tokenTypeString.equals(JavaTokenType.COLON.toString()))
-                                        colonFound = true;
-                                }
-
-                                if(plusFound || (questFound && colonFound))
-                                {
-                                    retVal= true;
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
+                scheduler.scheduleFix(expression);
             }
-        }
-        return retVal;
-    }
-
-    private static boolean isLocalVarDeclaration(PsiLiteralExpression expression)
-    {
-        boolean retVal = false;
-        PsiElement localVarParent = expression.getParent();
-        if(localVarParent != null && localVarParent instanceof PsiLocalVariable)
-        {
-            PsiElement declarationParent = localVarParent.getParent();
-            if(declarationParent != null && declarationParent instanceof PsiDeclarationStatement)
+            else
             {
-                retVal = true;
+                scheduler.scheduleRerun(expression);
             }
         }
-        return retVal;
-    }
-
-    private static boolean isNullKeyword(PsiLiteralExpression expression)
-    {
-        boolean retVal = false;
-        PsiElement firstChild = expression.getFirstChild();
-        if(firstChild != null && firstChild instanceof PsiJavaToken)
-        {
-            retVal = expression.getText().equals(PsiKeyword.NULL);
-        }
-        return retVal;
-    }
 
-    private static boolean isParentSystemPrint(PsiLiteralExpression expression)
-    {
-        PsiElement expressionParent = expression.getParent();
-        while(expressionParent != null && !(expressionParent instanceof PsiMethodCallExpression))
+        private void registerProblem(PsiLiteralExpression expression, ConstantsExtractorFix fixNow)
         {
-            expressionParent = expressionParent.getParent();
+            problemsHolder.registerProblem(expression, "Unassigned literal expression", ProblemHighlightType.GENERIC_ERROR_OR_WARNING,fixNow);
         }
 
-        boolean retVal = false;
-
-        if (expressionParent != null)
+        @Override
+        public void visitElement(PsiElement element)
         {
-            retVal = expressionParent.getText().matches("System.*print.*");
+            if(element instanceof PsiLiteral)
+            {
+                problemsHolder.registerProblem(element, "Just a PsiLiteral . . .", ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+            }
         }
-
-        return retVal;
-    }
-
-    private static boolean expressionIsEmptyString(PsiLiteralExpression expression)
-    {
-        return expression.getText().equals("\"\"");
     }
 
 }
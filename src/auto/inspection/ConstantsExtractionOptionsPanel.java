@@ -15,6 +15,7 @@
  */
 package auto.inspection;
 
+import auto.core.LiteralRuleSet;
 import auto.fix.IntroduceAndPropagateDialog;
 import com.intellij.codeInspection.InspectionProfileEntry;
 import com.intellij.openapi.ui.VerticalFlowLayout;
@@ -23,7 +24,11 @@ import sun.reflect.Reflection;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.lang.reflect.Field;
 
 public class ConstantsExtractionOptionsPanel extends JPanel
@@ -35,11 +40,35 @@ public class ConstantsExtractionOptionsPanel extends JPanel
     private String classActionCommand;
     private String classHierarchyActionCommand;
     private String packageActionCommand;
+    private String moduleActionCommand;
+    private String projectActionCommand;
+    private String outputSinksProperty;
+    private String reuseExistingConstantsProperty;
+    private String reuseProjectConstantsProperty;
+    private String holderClassProperty;
+    private String ignoredValuesProperty;
+    private String allowPatternProperty;
+    private String denyPatternProperty;
+    private String typePoliciesProperty;
+    private String minOccurrencesProperty;
+    private String occurrenceScopeProperty;
 
     public ConstantsExtractionOptionsPanel(InspectionProfileEntry constantsExtractionInspection, String autoExtractionProperty, String autoFixProperty,String useSuggestedNameProperty,
                                            String classActionCommand,
                                            String classHierarchyActionCommand,
-                                           String packageActionCommand)
+                                           String packageActionCommand,
+                                           String moduleActionCommand,
+                                           String projectActionCommand,
+                                           String outputSinksProperty,
+                                           String reuseExistingConstantsProperty,
+                                           String reuseProjectConstantsProperty,
+                                           String holderClassProperty,
+                                           String ignoredValuesProperty,
+                                           String allowPatternProperty,
+                                           String denyPatternProperty,
+                                           String typePoliciesProperty,
+                                           String minOccurrencesProperty,
+                                           String occurrenceScopeProperty)
     {
         owner = constantsExtractionInspection;
         autoExtractProperty = autoExtractionProperty;
@@ -48,6 +77,18 @@ public class ConstantsExtractionOptionsPanel extends JPanel
         this.classActionCommand = classActionCommand;
         this.classHierarchyActionCommand = classHierarchyActionCommand;
         this.packageActionCommand = packageActionCommand;
+        this.moduleActionCommand = moduleActionCommand;
+        this.projectActionCommand = projectActionCommand;
+        this.outputSinksProperty = outputSinksProperty;
+        this.reuseExistingConstantsProperty = reuseExistingConstantsProperty;
+        this.reuseProjectConstantsProperty = reuseProjectConstantsProperty;
+        this.holderClassProperty = holderClassProperty;
+        this.ignoredValuesProperty = ignoredValuesProperty;
+        this.allowPatternProperty = allowPatternProperty;
+        this.denyPatternProperty = denyPatternProperty;
+        this.typePoliciesProperty = typePoliciesProperty;
+        this.minOccurrencesProperty = minOccurrencesProperty;
+        this.occurrenceScopeProperty = occurrenceScopeProperty;
         createOptionsPanel();
     }
 
@@ -81,15 +122,27 @@ public class ConstantsExtractionOptionsPanel extends JPanel
         packageScope.setActionCommand(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND);
         packageScope.setSelected(getPropertyValue(owner, packageActionCommand));
 
+        final JRadioButton moduleScope = new JRadioButtonNoGuiUtils("Module");
+        moduleScope.setActionCommand(IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND);
+        moduleScope.setSelected(getPropertyValue(owner, moduleActionCommand));
+
+        final JRadioButton projectScope = new JRadioButtonNoGuiUtils("Project");
+        projectScope.setActionCommand(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND);
+        projectScope.setSelected(getPropertyValue(owner, projectActionCommand));
+
         final ButtonGroup scopeSelection = new ButtonGroup();
 
         scopeSelection.add(classScope);
         scopeSelection.add(classHierarchyScope);
         scopeSelection.add(packageScope);
+        scopeSelection.add(moduleScope);
+        scopeSelection.add(projectScope);
 
         classScope.getModel().addChangeListener(new ChangeListener(){public void stateChanged(ChangeEvent e){setCommandPropertyValues(scopeSelection);}});
         classHierarchyScope.getModel().addChangeListener(new ChangeListener(){public void stateChanged(ChangeEvent e){setCommandPropertyValues(scopeSelection);}});
         packageScope.getModel().addChangeListener(new ChangeListener(){public void stateChanged(ChangeEvent e){setCommandPropertyValues(scopeSelection);}});
+        moduleScope.getModel().addChangeListener(new ChangeListener(){public void stateChanged(ChangeEvent e){setCommandPropertyValues(scopeSelection);}});
+        projectScope.getModel().addChangeListener(new ChangeListener(){public void stateChanged(ChangeEvent e){setCommandPropertyValues(scopeSelection);}});
 
         // SET UP THE DEFAULT CHECK BOXES
         JCheckBox autoExtractionModeCheckBox = new JCheckBox("Enable Auto Mode for Constants Extraction", getPropertyValue(owner, autoExtractProperty));
@@ -109,6 +162,8 @@ public class ConstantsExtractionOptionsPanel extends JPanel
                 classScope.setEnabled(autoFixSelected);
                 classHierarchyScope.setEnabled(autoFixSelected);
                 packageScope.setEnabled(autoFixSelected);
+                moduleScope.setEnabled(autoFixSelected);
+                projectScope.setEnabled(autoFixSelected);
                 if(autoFixSelected)
                 {
                     setCommandPropertyValues(scopeSelection);
@@ -132,6 +187,87 @@ public class ConstantsExtractionOptionsPanel extends JPanel
         });
 
 
+        // SET UP THE OUTPUT METHODS WHOSE LITERALS ARE IGNORED
+        JLabel outputSinksLabel = new JLabel("Ignore literals passed to (Class#method, * as method suffix):");
+        JTextField outputSinksField = createStringPropertyField(outputSinksProperty);
+
+        // SET UP THE REUSE OF CONSTANTS THAT ALREADY HOLD THE VALUE
+        JCheckBox reuseExistingConstantsCheckBox = new JCheckBox("Replace with an existing constant of the same value in the class hierarchy",
+                                                                 getPropertyValue(owner, reuseExistingConstantsProperty));
+        final JCheckBox reuseProjectConstantsCheckBox = new JCheckBox("Also reuse constants declared anywhere else in the project",
+                                                                      getPropertyValue(owner, reuseProjectConstantsProperty));
+        final ButtonModel reuseExistingConstantsModel = reuseExistingConstantsCheckBox.getModel();
+        reuseExistingConstantsModel.addChangeListener(new ChangeListener()
+        {
+            public void stateChanged(ChangeEvent e)
+            {
+                setPropertyValue(owner, reuseExistingConstantsProperty, reuseExistingConstantsModel.isSelected());
+                reuseProjectConstantsCheckBox.setEnabled(reuseExistingConstantsModel.isSelected());
+            }
+        });
+        final ButtonModel reuseProjectConstantsModel = reuseProjectConstantsCheckBox.getModel();
+        reuseProjectConstantsModel.addChangeListener(new ChangeListener()
+        {
+            public void stateChanged(ChangeEvent e)
+            {
+                setPropertyValue(owner, reuseProjectConstantsProperty, reuseProjectConstantsModel.isSelected());
+            }
+        });
+
+        // SET UP THE HOLDER OF THE MODULE AND PROJECT SCOPE CONSTANTS
+        JLabel holderClassLabel = new JLabel("Holder interface for module and project scope constants (qualified name):");
+        JTextField holderClassField = createStringPropertyField(holderClassProperty);
+
+        // SET UP THE RULES DECIDING WHICH LITERALS ARE REPORTED
+        JLabel ignoredValuesLabel = new JLabel("Ignored values (as in the source, e.g. 0, 1, -1, \"\"):");
+        JTextField ignoredValuesField = createStringPropertyField(ignoredValuesProperty);
+        JLabel allowPatternLabel = new JLabel("Always report literals matching (regular expression, quotes included):");
+        JTextField allowPatternField = createStringPropertyField(allowPatternProperty);
+        JLabel denyPatternLabel = new JLabel("Never report literals matching (regular expression, quotes included):");
+        JTextField denyPatternField = createStringPropertyField(denyPatternProperty);
+        JLabel typePoliciesLabel = new JLabel("Type policies (type:ignore or type:minimum occurrences, e.g. boolean:ignore, string:2):");
+        JTextField typePoliciesField = createStringPropertyField(typePoliciesProperty);
+
+        JLabel minOccurrencesLabel = new JLabel("Report values occurring at least");
+        final JTextField minOccurrencesField = new JTextField(String.valueOf(getIntPropertyValue(owner, minOccurrencesProperty)), 4);
+        minOccurrencesField.getDocument().addDocumentListener(new DocumentListener()
+        {
+            public void insertUpdate(DocumentEvent e)
+            {
+                setIntPropertyValue(owner, minOccurrencesProperty, minOccurrencesField.getText());
+            }
+
+            public void removeUpdate(DocumentEvent e)
+            {
+                setIntPropertyValue(owner, minOccurrencesProperty, minOccurrencesField.getText());
+            }
+
+            public void changedUpdate(DocumentEvent e)
+            {
+                setIntPropertyValue(owner, minOccurrencesProperty, minOccurrencesField.getText());
+            }
+        });
+        final JComboBox occurrenceScopeCombo = new JComboBox(LiteralRuleSet.OccurrenceScope.values());
+        for(LiteralRuleSet.OccurrenceScope scope : LiteralRuleSet.OccurrenceScope.values())
+        {
+            if(scope.name().equalsIgnoreCase(getStringPropertyValue(owner, occurrenceScopeProperty)))
+            {
+                occurrenceScopeCombo.setSelectedItem(scope);
+            }
+        }
+        occurrenceScopeCombo.addActionListener(new ActionListener()
+        {
+            public void actionPerformed(ActionEvent e)
+            {
+                setStringPropertyValue(owner, occurrenceScopeProperty, ((LiteralRuleSet.OccurrenceScope)occurrenceScopeCombo.getSelectedItem()).name());
+            }
+        });
+        JPanel minOccurrencesPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        minOccurrencesPanel.add(minOccurrencesLabel);
+        minOccurrencesPanel.add(minOccurrencesField);
+        minOccurrencesPanel.add(new JLabel("times in their"));
+        minOccurrencesPanel.add(occurrenceScopeCombo);
+
         // ADD EVERYTHING TO THE PANEL
         add(autoExtractionModeCheckBox);
 
@@ -145,11 +281,31 @@ public class ConstantsExtractionOptionsPanel extends JPanel
         add(createDoubleTabbedPanel(classScope));
         add(createDoubleTabbedPanel(classHierarchyScope));
         add(createDoubleTabbedPanel(packageScope));
+        add(createDoubleTabbedPanel(moduleScope));
+        add(createDoubleTabbedPanel(projectScope));
+        add(outputSinksLabel);
+        add(outputSinksField);
+        add(reuseExistingConstantsCheckBox);
+        add(createDoubleTabbedPanel(reuseProjectConstantsCheckBox));
+        add(holderClassLabel);
+        add(holderClassField);
+        add(ignoredValuesLabel);
+        add(ignoredValuesField);
+        add(allowPatternLabel);
+        add(allowPatternField);
+        add(denyPatternLabel);
+        add(denyPatternField);
+        add(typePoliciesLabel);
+        add(typePoliciesField);
+        add(minOccurrencesPanel);
 
         autoFixModeCheckBox.setEnabled(autoModeModel.isSelected());
         classScope.setEnabled(autoFixModel.isSelected());
         classHierarchyScope.setEnabled(autoFixModel.isSelected());
         packageScope.setEnabled(autoFixModel.isSelected());
+        moduleScope.setEnabled(autoFixModel.isSelected());
+        projectScope.setEnabled(autoFixModel.isSelected());
+        reuseProjectConstantsCheckBox.setEnabled(reuseExistingConstantsModel.isSelected());
     }
 
     void setCommandPropertyValues(ButtonGroup scopeSelection)
@@ -158,6 +314,31 @@ public class ConstantsExtractionOptionsPanel extends JPanel
         setPropertyValue(owner, classActionCommand, selectionCommand.equals(IntroduceAndPropagateDialog.CLASS_ACTION_COMMAND));
         setPropertyValue(owner, classHierarchyActionCommand, selectionCommand.equals(IntroduceAndPropagateDialog.CLASS_HIERARCHY_COMMAND));
         setPropertyValue(owner, packageActionCommand, selectionCommand.equals(IntroduceAndPropagateDialog.PACKAGE_ACTION_COMMAND));
+        setPropertyValue(owner, moduleActionCommand, selectionCommand.equals(IntroduceAndPropagateDialog.MODULE_ACTION_COMMAND));
+        setPropertyValue(owner, projectActionCommand, selectionCommand.equals(IntroduceAndPropagateDialog.PROJECT_ACTION_COMMAND));
+    }
+
+    private JTextField createStringPropertyField(final String property)
+    {
+        final JTextField retVal = new JTextField(getStringPropertyValue(owner, property), 40);
+        retVal.getDocument().addDocumentListener(new DocumentListener()
+        {
+            public void insertUpdate(DocumentEvent e)
+            {
+                setStringPropertyValue(owner, property, retVal.getText());
+            }
+
+            public void removeUpdate(DocumentEvent e)
+            {
+                setStringPropertyValue(owner, property, retVal.getText());
+            }
+
+            public void changedUpdate(DocumentEvent e)
+            {
+                setStringPropertyValue(owner, property, retVal.getText());
+            }
+        });
+        return retVal;
     }
 
     private static JPanel createDoubleTabbedPanel(Component component)
@@ -205,6 +386,85 @@ public class ConstantsExtractionOptionsPanel extends JPanel
         }
     }
 
+    private static String getStringPropertyValue(InspectionProfileEntry owner, String property)
+    {
+        try
+        {
+            final Class<? extends InspectionProfileEntry> aClass = owner.getClass();
+            final Field field = aClass.getField(property);
+            return (String)field.get(owner);
+        }
+        catch (IllegalAccessException ignore)
+        {
+            return "";
+        }
+        catch (NoSuchFieldException ignore)
+        {
+            return "";
+        }
+    }
+
+    private static void setStringPropertyValue(InspectionProfileEntry owner, String property, String value)
+    {
+        try
+        {
+            final Class<? extends InspectionProfileEntry> aClass = owner.getClass();
+            final Field field = aClass.getField(property);
+            field.set(owner, value);
+        }
+        catch (IllegalAccessException ignore)
+        {
+            // do nothing
+        }
+        catch (NoSuchFieldException ignore)
+        {
+            // do nothing
+        }
+    }
+
+    private static int getIntPropertyValue(InspectionProfileEntry owner, String property)
+    {
+        try
+        {
+            final Class<? extends InspectionProfileEntry> aClass = owner.getClass();
+            final Field field = aClass.getField(property);
+            return field.getInt(owner);
+        }
+        catch (IllegalAccessException ignore)
+        {
+            return 1;
+        }
+        catch (NoSuchFieldException ignore)
+        {
+            return 1;
+        }
+    }
+
+    /**
+     * Leaves the property alone while the text isn't a number.
+     */
+    private static void setIntPropertyValue(InspectionProfileEntry owner, String property, String value)
+    {
+        try
+        {
+            final Class<? extends InspectionProfileEntry> aClass = owner.getClass();
+            final Field field = aClass.getField(property);
+            field.setInt(owner, Integer.parseInt(value.trim()));
+        }
+        catch (NumberFormatException ignore)
+        {
+            // do nothing
+        }
+        catch (IllegalAccessException ignore)
+        {
+            // do nothing
+        }
+        catch (NoSuchFieldException ignore)
+        {
+            // do nothing
+        }
+    }
+
     private class JCheckBoxNoGuiUtils extends JCheckBox
     {
         public JCheckBoxNoGuiUtils(String label, boolean enabled)
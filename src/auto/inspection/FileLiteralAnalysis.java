@@ -0,0 +1,249 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.inspection;
+
+import auto.core.DefaultLiteralFilter;
+import auto.core.LiteralContext;
+import auto.core.LiteralFilter;
+import auto.core.LiteralRuleSet;
+import auto.core.OutputSinkRegistry;
+import auto.core.PhaseMetrics;
+import auto.fix.IntroduceAndPropagateConstantHandler;
+import auto.index.LiteralValueIndex;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * The classification and suggested name of every literal of a file. It is cached in the file's user data until
+ * the file is modified, so highlighting passes over an unchanged file don't run the filters or resolve anything.
+ */
+public class FileLiteralAnalysis
+{
+    private static final Key<CachedValue<FileLiteralAnalysis>> ANALYSIS = Key.create("auto.inspection.FileLiteralAnalysis");
+    // the last computed analysis, read without ever computing one
+    private static final Key<SoftReference<FileLiteralAnalysis>> LAST_ANALYSIS = Key.create("auto.inspection.FileLiteralAnalysis.last");
+    private static final LiteralFilter TEXT_FILTER = DefaultLiteralFilter.getInstance();
+    private static final PhaseMetrics METRICS = PhaseMetrics.getInstance();
+
+    private final OutputSinkRegistry mySinks;
+    private final LiteralRuleSet myRules;
+    private final HashMap<PsiLiteralExpression, LiteralInfo> myLiterals = new HashMap<PsiLiteralExpression, LiteralInfo>();
+    private final HashMap<String, Integer> myValueCounts = new HashMap<String, Integer>();
+    private long myModificationStamp = -1;
+
+    private FileLiteralAnalysis(OutputSinkRegistry sinks, LiteralRuleSet rules)
+    {
+        mySinks = sinks;
+        myRules = rules;
+    }
+
+    /**
+     * Every call counts as one request for the hit rate reported by {@link PhaseMetrics}, callers fetch the analysis
+     * once per pass over the file. Needs a read action.
+     */
+    public static FileLiteralAnalysis getInstance(final PsiFile file, final OutputSinkRegistry sinks, final LiteralRuleSet rules)
+    {
+        METRICS.countAnalysisRequest();
+
+        CachedValue<FileLiteralAnalysis> cachedAnalysis = file.getUserData(ANALYSIS);
+        FileLiteralAnalysis retVal = cachedAnalysis != null ? cachedAnalysis.getValue() : null;
+        // the options changed since the analysis was computed
+        if(retVal == null || retVal.mySinks != sinks || retVal.myRules != rules)
+        {
+            cachedAnalysis = CachedValuesManager.getManager(file.getProject()).createCachedValue(new CachedValueProvider<FileLiteralAnalysis>()
+            {
+                public Result<FileLiteralAnalysis> compute()
+                {
+                    METRICS.countAnalysisComputation();
+                    long modificationStamp = file.getModificationStamp();
+                    FileLiteralAnalysis analysis = analyze(file, sinks, rules);
+                    analysis.myModificationStamp = modificationStamp;
+                    file.putUserData(LAST_ANALYSIS, new SoftReference<FileLiteralAnalysis>(analysis));
+                    return Result.create(analysis, file);
+                }
+            }, false);
+            file.putUserData(ANALYSIS, cachedAnalysis);
+            retVal = cachedAnalysis.getValue();
+        }
+        return retVal;
+    }
+
+    /**
+     * Never analyzes anything, so it is cheap enough for the event dispatch thread: the name is the one suggested
+     * when the file was last highlighted, provided the file hasn't changed since.
+     * @return the cached suggested name of the literal, null if there is none
+     */
+    public static String getCachedSuggestedName(PsiLiteralExpression expression)
+    {
+        String retVal = null;
+        PsiFile file = expression.getContainingFile();
+        SoftReference<FileLiteralAnalysis> lastAnalysis = file != null ? file.getUserData(LAST_ANALYSIS) : null;
+        FileLiteralAnalysis analysis = lastAnalysis != null ? lastAnalysis.get() : null;
+        if(analysis != null && analysis.myModificationStamp == file.getModificationStamp())
+        {
+            LiteralInfo literalInfo = analysis.getLiteralInfo(expression);
+            retVal = literalInfo != null ? literalInfo.getSuggestedName() : null;
+        }
+        return retVal;
+    }
+
+    /**
+     * Analyzes the file without caching the result, for callers going through many files once.
+     */
+    public static FileLiteralAnalysis analyze(PsiFile file, OutputSinkRegistry sinks, LiteralRuleSet rules)
+    {
+        long start = METRICS.start();
+        final FileLiteralAnalysis retVal = new FileLiteralAnalysis(sinks, rules);
+        try
+        {
+            file.accept(new JavaRecursiveElementVisitor()
+            {
+                @Override
+                public void visitLiteralExpression(PsiLiteralExpression expression)
+                {
+                    retVal.myLiterals.put(expression, retVal.analyzeLiteral(expression));
+                    retVal.countValue(expression);
+                }
+            });
+        }
+        finally
+        {
+            METRICS.record(PhaseMetrics.Phase.ANALYSIS, start);
+        }
+        return retVal;
+    }
+
+    private LiteralInfo analyzeLiteral(PsiLiteralExpression expression)
+    {
+        char kind = LiteralValueIndex.getKind(expression);
+        String text = expression.getText();
+
+        LiteralContext context = null;
+        String suggestedName = null;
+        // the text filters and rules are cheap, only walk the ancestors of the literals that pass them
+        if(!TEXT_FILTER.isExcluded(text, kind) && !myRules.isExcluded(text, kind, isNegated(expression)))
+        {
+            context = LiteralClassifier.classify(expression, mySinks);
+            if(!context.isExcluded() && !context.isInField())
+            {
+                suggestedName = IntroduceAndPropagateConstantHandler.extractDefaultFieldName(expression);
+            }
+        }
+        return new LiteralInfo(context, suggestedName);
+    }
+
+    private static boolean isNegated(PsiLiteralExpression expression)
+    {
+        PsiElement parent = expression.getParent();
+        return parent instanceof PsiPrefixExpression && ((PsiPrefixExpression)parent).getOperationSign().getTokenType() == JavaTokenType.MINUS;
+    }
+
+    private void countValue(PsiLiteralExpression expression)
+    {
+        String key = LiteralValueIndex.getKey(expression);
+        if(key != null)
+        {
+            Integer count = myValueCounts.get(key);
+            myValueCounts.put(key, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * @return the number of literals of the file with the literal's value, the literal included
+     */
+    public int getFileOccurrences(PsiLiteralExpression expression)
+    {
+        String key = LiteralValueIndex.getKey(expression);
+        Integer retVal = key != null ? myValueCounts.get(key) : null;
+        return retVal != null ? retVal : 1;
+    }
+
+    public LiteralRuleSet getRules()
+    {
+        return myRules;
+    }
+
+    /**
+     * @return the analysis of the literal, null if it isn't part of the analyzed file
+     */
+    public LiteralInfo getLiteralInfo(PsiLiteralExpression expression)
+    {
+        return myLiterals.get(expression);
+    }
+
+    /**
+     * @return every literal of the file, in no particular order
+     */
+    public Set<PsiLiteralExpression> getLiterals()
+    {
+        return Collections.unmodifiableSet(myLiterals.keySet());
+    }
+
+    /**
+     * @return the literals reported by the inspection, in no particular order
+     */
+    public List<PsiLiteralExpression> getCandidates()
+    {
+        ArrayList<PsiLiteralExpression> retVal = new ArrayList<PsiLiteralExpression>();
+        for(Map.Entry<PsiLiteralExpression, LiteralInfo> entry : myLiterals.entrySet())
+        {
+            if(entry.getValue().isCandidate())
+            {
+                retVal.add(entry.getKey());
+            }
+        }
+        return retVal;
+    }
+
+    public static class LiteralInfo
+    {
+        private final LiteralContext myContext;
+        private final String mySuggestedName;
+
+        private LiteralInfo(LiteralContext context, String suggestedName)
+        {
+            myContext = context;
+            mySuggestedName = suggestedName;
+        }
+
+        /**
+         * @return the classification of the literal, null if its text already excludes it
+         */
+        public LiteralContext getContext()
+        {
+            return myContext;
+        }
+
+        /**
+         * @return true if the literal is reported by the inspection
+         */
+        public boolean isCandidate()
+        {
+            return mySuggestedName != null;
+        }
+
+        public String getSuggestedName()
+        {
+            return mySuggestedName;
+        }
+    }
+}
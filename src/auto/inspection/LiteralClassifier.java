@@ -0,0 +1,178 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.inspection;
+
+import auto.core.LiteralAncestorWalker;
+import auto.core.LiteralContext;
+import auto.core.OutputSinkRegistry;
+import auto.index.LiteralValueIndex;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.*;
+import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+
+import java.util.ArrayList;
+
+/**
+ * Builds the {@link LiteralContext} of a literal walking its ancestors only once, instead of one
+ * getParentOfType per filter. The walk is {@link LiteralAncestorWalker}'s, this class only tells it what the
+ * PSI elements are.
+ */
+public class LiteralClassifier extends LiteralAncestorWalker<PsiElement>
+{
+    private static final Key<CachedValue<String[]>> CALL_TARGETS = Key.create("auto.inspection.LiteralClassifier.callTargets");
+    private static final String[] NO_TARGETS = new String[0];
+    private static final LiteralClassifier INSTANCE = new LiteralClassifier();
+
+    private LiteralClassifier()
+    {
+    }
+
+    public static LiteralContext classify(PsiLiteralExpression expression, OutputSinkRegistry sinks)
+    {
+        char kind = 0;
+        PsiElement firstChild = expression.getFirstChild();
+        if(firstChild instanceof PsiJavaToken)
+        {
+            kind = LiteralValueIndex.getKind(((PsiJavaToken)firstChild).getTokenType());
+        }
+        return INSTANCE.classify(expression, kind, sinks);
+    }
+
+    protected PsiElement getParent(PsiElement element)
+    {
+        return element.getParent();
+    }
+
+    protected int getNodeType(PsiElement element)
+    {
+        int retVal = OTHER;
+        if(element instanceof PsiFile)
+        {
+            retVal = FILE;
+        }
+        else if(element instanceof PsiMethodCallExpression)
+        {
+            retVal = METHOD_CALL;
+        }
+        else if(element instanceof PsiAssignmentExpression)
+        {
+            retVal = ASSIGNMENT;
+        }
+        else if(element instanceof PsiLocalVariable)
+        {
+            retVal = LOCAL_VARIABLE;
+        }
+        else if(element instanceof PsiField)
+        {
+            retVal = FIELD;
+        }
+        else if(element instanceof PsiAnnotation)
+        {
+            retVal = ANNOTATION;
+        }
+        else if(element instanceof PsiReturnStatement)
+        {
+            retVal = RETURN;
+        }
+        else if(element instanceof PsiDeclarationStatement)
+        {
+            retVal = DECLARATION_STATEMENT;
+        }
+        return retVal;
+    }
+
+    protected int getOperators(PsiElement element)
+    {
+        int retVal = 0;
+        for(PsiElement child : element.getChildren())
+        {
+            if(child instanceof PsiJavaToken)
+            {
+                IElementType tokenType = ((PsiJavaToken)child).getTokenType();
+                if(tokenType == JavaTokenType.PLUS)
+                {
+                    retVal |= PLUS;
+                }
+                else if(tokenType == JavaTokenType.QUEST)
+                {
+                    retVal |= QUEST;
+                }
+                else if(tokenType == JavaTokenType.COLON)
+                {
+                    retVal |= COLON;
+                }
+            }
+        }
+        return retVal;
+    }
+
+    protected String[] getCallTargets(PsiElement methodCall)
+    {
+        return getCallTargets((PsiMethodCallExpression)methodCall);
+    }
+
+    /**
+     * @return the name of the called method followed by the qualified names of the classes declaring it, cached on
+     * the call until the next PSI change so that every literal of a call resolves it only once
+     */
+    private static String[] getCallTargets(final PsiMethodCallExpression methodCall)
+    {
+        CachedValue<String[]> cachedTargets = methodCall.getUserData(CALL_TARGETS);
+        if(cachedTargets == null)
+        {
+            cachedTargets = CachedValuesManager.getManager(methodCall.getProject()).createCachedValue(new CachedValueProvider<String[]>()
+            {
+                public Result<String[]> compute()
+                {
+                    return Result.create(resolveCallTargets(methodCall), PsiModificationTracker.MODIFICATION_COUNT);
+                }
+            }, false);
+            methodCall.putUserData(CALL_TARGETS, cachedTargets);
+        }
+        return cachedTargets.getValue();
+    }
+
+    private static String[] resolveCallTargets(PsiMethodCallExpression methodCall)
+    {
+        String[] retVal = NO_TARGETS;
+        PsiMethod method = methodCall.resolveMethod();
+        if(method != null)
+        {
+            ArrayList<String> targets = new ArrayList<String>();
+            targets.add(method.getName());
+            addContainingClassName(method, targets);
+            for(PsiMethod superMethod : method.findDeepestSuperMethods())
+            {
+                addContainingClassName(superMethod, targets);
+            }
+            retVal = targets.toArray(new String[targets.size()]);
+        }
+        return retVal;
+    }
+
+    private static void addContainingClassName(PsiMethod method, ArrayList<String> targets)
+    {
+        PsiClass containingClass = method.getContainingClass();
+        if(containingClass != null && containingClass.getQualifiedName() != null)
+        {
+            targets.add(containingClass.getQualifiedName());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.inspection;
+
+import auto.core.LiteralRuleSet;
+import auto.index.LiteralValueIndex;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.search.GlobalSearchScope;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checks the minimum occurrence count of the rules. The count of the literal's own file comes with the file's
+ * analysis and settles most literals; only values too rare in their file for a module or project threshold are
+ * counted with the literal value index, once per value and scope for the lifetime of the instance. Callers create
+ * one per pass over their files, it may be shared by threads.
+ */
+public class OccurrenceThreshold
+{
+    private final Project myProject;
+    private final ConcurrentHashMap<String, Integer> myCounts = new ConcurrentHashMap<String, Integer>();
+
+    public OccurrenceThreshold(Project project)
+    {
+        myProject = project;
+    }
+
+    /**
+     * Needs a read action.
+     * @return true if the literal's value occurs often enough in the occurrence scope of the analysis' rules
+     */
+    public boolean isMet(PsiLiteralExpression expression, FileLiteralAnalysis analysis)
+    {
+        LiteralRuleSet rules = analysis.getRules();
+        int minOccurrences = rules.getMinOccurrences(expression.getText(), LiteralValueIndex.getKind(expression));
+        boolean retVal = minOccurrences <= 1 || analysis.getFileOccurrences(expression) >= minOccurrences;
+        if(!retVal && rules.getOccurrenceScope() != LiteralRuleSet.OccurrenceScope.FILE)
+        {
+            // while indexing nothing is hidden for want of a count
+            retVal = !LiteralValueIndex.isAvailable(myProject) || getScopeOccurrences(expression, rules.getOccurrenceScope()) >= minOccurrences;
+        }
+        return retVal;
+    }
+
+    private int getScopeOccurrences(PsiLiteralExpression expression, LiteralRuleSet.OccurrenceScope occurrenceScope)
+    {
+        Module module = occurrenceScope == LiteralRuleSet.OccurrenceScope.MODULE ? ModuleUtil.findModuleForPsiElement(expression) : null;
+        GlobalSearchScope scope = module != null ? GlobalSearchScope.moduleScope(module) : GlobalSearchScope.projectScope(myProject);
+        String cacheKey = (module != null ? module.getName() : "") + '\n' + LiteralValueIndex.getKey(expression);
+
+        Integer retVal = myCounts.get(cacheKey);
+        if(retVal == null)
+        {
+            retVal = 0;
+            for(Integer fileCount : LiteralValueIndex.getOccurrenceCounts(expression, scope).values())
+            {
+                retVal += fileCount;
+            }
+            myCounts.put(cacheKey, retVal);
+        }
+        return retVal;
+    }
+}
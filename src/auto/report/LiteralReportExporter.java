@@ -0,0 +1,258 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.report;
+
+import auto.core.LiteralContext;
+import auto.core.LiteralRuleSet;
+import auto.core.OutputSinkRegistry;
+import auto.index.LiteralValueIndex;
+import auto.inspection.FileLiteralAnalysis;
+import auto.inspection.OccurrenceThreshold;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileTypes.StdFileTypes;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.search.GlobalSearchScope;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes every literal of the project's sources with its classification, suggested name and the number of times
+ * its value occurs in the project. The files are analyzed one at a time in their own read action and their rows
+ * are written before the next file is touched, so the memory used depends on the largest file rather than on the
+ * size of the project.
+ */
+public class LiteralReportExporter
+{
+    private static final String EXCLUDED_BY_TEXT = "excluded by text";
+    private static final String EXCLUDED_BY_CONTEXT = "excluded by context";
+    private static final String FIELD_INITIALIZER = "field initializer";
+    private static final String CANDIDATE = "candidate";
+    private static final String BELOW_THRESHOLD = "below occurrence threshold";
+    private static final int OCCURRENCE_CACHE_SIZE = 4096;
+    private static final String ENCODING = "UTF-8";
+
+    private final Project myProject;
+    private final OutputSinkRegistry mySinks;
+    private final LiteralRuleSet myRules;
+    private final OccurrenceThreshold myThreshold;
+    private final Map<String, Integer> myOccurrenceCounts = new LinkedHashMap<String, Integer>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest)
+        {
+            return size() > OCCURRENCE_CACHE_SIZE;
+        }
+    };
+    private int myFilesExported = 0;
+    private int myLiteralsExported = 0;
+
+    public LiteralReportExporter(Project project, OutputSinkRegistry sinks, LiteralRuleSet rules)
+    {
+        myProject = project;
+        mySinks = sinks;
+        myRules = rules;
+        myThreshold = new OccurrenceThreshold(project);
+    }
+
+    /**
+     * Writes JSON to .json files and CSV to anything else, see {@link #export(LiteralReportWriter)}.
+     */
+    public void export(File file) throws IOException
+    {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ENCODING));
+        try
+        {
+            export(LiteralReportWriter.create(out, file.getName()));
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Must not be called inside a read action, honours the cancellation of the current progress indicator.
+     */
+    public void export(LiteralReportWriter writer) throws IOException
+    {
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        List<VirtualFile> files = ApplicationManager.getApplication().runReadAction(new Computable<List<VirtualFile>>()
+        {
+            public List<VirtualFile> compute()
+            {
+                return collectJavaFiles();
+            }
+        });
+
+        writer.start();
+        for(int i = 0; i < files.size(); i++)
+        {
+            final VirtualFile file = files.get(i);
+            if(indicator != null)
+            {
+                indicator.checkCanceled();
+                indicator.setFraction((double)i / files.size());
+                indicator.setText2(file.getPresentableUrl());
+            }
+
+            List<LiteralReportRow> rows = ApplicationManager.getApplication().runReadAction(new Computable<List<LiteralReportRow>>()
+            {
+                public List<LiteralReportRow> compute()
+                {
+                    return createRows(file);
+                }
+            });
+            for(LiteralReportRow row : rows)
+            {
+                writer.write(row);
+            }
+            writer.flush();
+
+            myFilesExported++;
+            myLiteralsExported += rows.size();
+        }
+        writer.finish();
+    }
+
+    public int getFilesExported()
+    {
+        return myFilesExported;
+    }
+
+    public int getLiteralsExported()
+    {
+        return myLiteralsExported;
+    }
+
+    private List<VirtualFile> collectJavaFiles()
+    {
+        final ArrayList<VirtualFile> retVal = new ArrayList<VirtualFile>();
+        final ProjectFileIndex fileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+        fileIndex.iterateContent(new ContentIterator()
+        {
+            public boolean processFile(VirtualFile fileOrDir)
+            {
+                if(!fileOrDir.isDirectory() && fileOrDir.getFileType() == StdFileTypes.JAVA && fileIndex.isInSourceContent(fileOrDir))
+                {
+                    retVal.add(fileOrDir);
+                }
+                return true;
+            }
+        });
+        return retVal;
+    }
+
+    private List<LiteralReportRow> createRows(VirtualFile file)
+    {
+        ArrayList<LiteralReportRow> retVal = new ArrayList<LiteralReportRow>();
+        PsiFile psiFile = file.isValid() ? PsiManager.getInstance(myProject).findFile(file) : null;
+        if(psiFile instanceof PsiJavaFile)
+        {
+            String path = getPath(file);
+            FileLiteralAnalysis analysis = FileLiteralAnalysis.analyze(psiFile, mySinks, myRules);
+
+            ArrayList<PsiLiteralExpression> literals = new ArrayList<PsiLiteralExpression>(analysis.getLiterals());
+            Collections.sort(literals, new Comparator<PsiLiteralExpression>()
+            {
+                public int compare(PsiLiteralExpression o1, PsiLiteralExpression o2)
+                {
+                    return o1.getTextOffset() - o2.getTextOffset();
+                }
+            });
+
+            for(PsiLiteralExpression literal : literals)
+            {
+                FileLiteralAnalysis.LiteralInfo literalInfo = analysis.getLiteralInfo(literal);
+                LiteralContext context = literalInfo.getContext();
+                PsiType type = literal.getType();
+                retVal.add(new LiteralReportRow(path, literal.getTextOffset(), literal.getText(), type != null ? type.getPresentableText() : "null",
+                                                getClassification(literal, analysis), context != null ? context.describeFlags() : "",
+                                                getOccurrenceCount(literal), literalInfo.getSuggestedName()));
+            }
+        }
+        return retVal;
+    }
+
+    private String getPath(VirtualFile file)
+    {
+        VirtualFile baseDir = myProject.getBaseDir();
+        String retVal = baseDir != null ? VfsUtil.getRelativePath(file, baseDir, '/') : null;
+        if(retVal == null)
+        {
+            retVal = file.getPath();
+        }
+        return retVal;
+    }
+
+    private String getClassification(PsiLiteralExpression literal, FileLiteralAnalysis analysis)
+    {
+        FileLiteralAnalysis.LiteralInfo literalInfo = analysis.getLiteralInfo(literal);
+        LiteralContext context = literalInfo.getContext();
+        String retVal = CANDIDATE;
+        if(context == null)
+        {
+            retVal = EXCLUDED_BY_TEXT;
+        }
+        else if(context.isExcluded())
+        {
+            retVal = EXCLUDED_BY_CONTEXT;
+        }
+        else if(context.isInField())
+        {
+            retVal = FIELD_INITIALIZER;
+        }
+        else if(!myThreshold.isMet(literal, analysis))
+        {
+            retVal = BELOW_THRESHOLD;
+        }
+        return retVal;
+    }
+
+    /**
+     * The counts come from the literal value index and are cached per value, most values show up in many files.
+     * @return the occurrences of the literal's value in the project, -1 while the index isn't available
+     */
+    private int getOccurrenceCount(PsiLiteralExpression literal)
+    {
+        int retVal = -1;
+        String key = LiteralValueIndex.getKey(literal);
+        if(key != null && LiteralValueIndex.isAvailable(myProject))
+        {
+            Integer count = myOccurrenceCounts.get(key);
+            if(count == null)
+            {
+                count = 0;
+                for(Integer fileCount : LiteralValueIndex.getOccurrenceCounts(literal, GlobalSearchScope.projectScope(myProject)).values())
+                {
+                    count += fileCount;
+                }
+                myOccurrenceCounts.put(key, count);
+            }
+            retVal = count;
+        }
+        return retVal;
+    }
+}
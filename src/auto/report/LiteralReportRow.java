@@ -0,0 +1,89 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.report;
+
+/**
+ * One literal of the report, detached from the PSI so the file it came from can be let go before the next one is
+ * analyzed.
+ */
+public class LiteralReportRow
+{
+    private final String myFile;
+    private final int myOffset;
+    private final String myValue;
+    private final String myType;
+    private final String myClassification;
+    private final String myContext;
+    private final int myOccurrences;
+    private final String mySuggestedName;
+
+    /**
+     * @param occurrences the occurrences of the value in the project, -1 when unknown
+     * @param suggestedName null unless the literal is a candidate
+     */
+    public LiteralReportRow(String file, int offset, String value, String type, String classification, String context, int occurrences,
+                            String suggestedName)
+    {
+        myFile = file;
+        myOffset = offset;
+        myValue = value;
+        myType = type;
+        myClassification = classification;
+        myContext = context;
+        myOccurrences = occurrences;
+        mySuggestedName = suggestedName;
+    }
+
+    public String getFile()
+    {
+        return myFile;
+    }
+
+    public int getOffset()
+    {
+        return myOffset;
+    }
+
+    public String getValue()
+    {
+        return myValue;
+    }
+
+    public String getType()
+    {
+        return myType;
+    }
+
+    public String getClassification()
+    {
+        return myClassification;
+    }
+
+    public String getContext()
+    {
+        return myContext;
+    }
+
+    public int getOccurrences()
+    {
+        return myOccurrences;
+    }
+
+    public String getSuggestedName()
+    {
+        return mySuggestedName;
+    }
+}
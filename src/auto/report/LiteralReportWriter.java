@@ -0,0 +1,189 @@
+/*
+ * Copyright 2000-2010 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package auto.report;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams the rows of a literal report to a writer as they come, without keeping any of them.
+ */
+public abstract class LiteralReportWriter
+{
+    private static final String JSON_EXTENSION = ".json";
+
+    protected final Writer myOut;
+
+    protected LiteralReportWriter(Writer out)
+    {
+        myOut = out;
+    }
+
+    /**
+     * @return a JSON writer for .json files, a CSV writer for anything else
+     */
+    public static LiteralReportWriter create(Writer out, String fileName)
+    {
+        LiteralReportWriter retVal = new CsvReportWriter(out);
+        if(fileName.toLowerCase().endsWith(JSON_EXTENSION))
+        {
+            retVal = new JsonReportWriter(out);
+        }
+        return retVal;
+    }
+
+    public abstract void start() throws IOException;
+
+    public abstract void write(LiteralReportRow row) throws IOException;
+
+    /**
+     * Writes whatever closes the report and flushes it, the writer itself is closed by the caller.
+     */
+    public abstract void finish() throws IOException;
+
+    public void flush() throws IOException
+    {
+        myOut.flush();
+    }
+
+    private static class CsvReportWriter extends LiteralReportWriter
+    {
+        private CsvReportWriter(Writer out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void start() throws IOException
+        {
+            myOut.write("file,offset,value,type,classification,context,occurrences,suggested name\n");
+        }
+
+        @Override
+        public void write(LiteralReportRow row) throws IOException
+        {
+            myOut.write(quote(row.getFile()));
+            myOut.write(',');
+            myOut.write(String.valueOf(row.getOffset()));
+            myOut.write(',');
+            myOut.write(quote(row.getValue()));
+            myOut.write(',');
+            myOut.write(quote(row.getType()));
+            myOut.write(',');
+            myOut.write(quote(row.getClassification()));
+            myOut.write(',');
+            myOut.write(quote(row.getContext()));
+            myOut.write(',');
+            myOut.write(String.valueOf(row.getOccurrences()));
+            myOut.write(',');
+            myOut.write(quote(row.getSuggestedName()));
+            myOut.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            myOut.flush();
+        }
+
+        private static String quote(String value)
+        {
+            String retVal = "";
+            if(value != null)
+            {
+                retVal = "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            return retVal;
+        }
+    }
+
+    private static class JsonReportWriter extends LiteralReportWriter
+    {
+        private boolean myFirstRow = true;
+
+        private JsonReportWriter(Writer out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void start() throws IOException
+        {
+            myOut.write("[");
+        }
+
+        @Override
+        public void write(LiteralReportRow row) throws IOException
+        {
+            myOut.write(myFirstRow ? "\n" : ",\n");
+            myFirstRow = false;
+
+            myOut.write("{\"file\":");
+            myOut.write(quote(row.getFile()));
+            myOut.write(",\"offset\":");
+            myOut.write(String.valueOf(row.getOffset()));
+            myOut.write(",\"value\":");
+            myOut.write(quote(row.getValue()));
+            myOut.write(",\"type\":");
+            myOut.write(quote(row.getType()));
+            myOut.write(",\"classification\":");
+            myOut.write(quote(row.getClassification()));
+            myOut.write(",\"context\":");
+            myOut.write(quote(row.getContext()));
+            myOut.write(",\"occurrences\":");
+            myOut.write(String.valueOf(row.getOccurrences()));
+            myOut.write(",\"suggestedName\":");
+            myOut.write(quote(row.getSuggestedName()));
+            myOut.write("}");
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            myOut.write("\n]\n");
+            myOut.flush();
+        }
+
+        private static String quote(String value)
+        {
+            String retVal = "null";
+            if(value != null)
+            {
+                StringBuilder builder = new StringBuilder(value.length() + 8);
+                builder.append('"');
+                for(int i = 0; i < value.length(); i++)
+                {
+                    char c = value.charAt(i);
+                    if(c == '"' || c == '\\')
+                    {
+                        builder.append('\\').append(c);
+                    }
+                    else if(c < ' ')
+                    {
+                        builder.append(String.format("\\u%04x", (int)c));
+                    }
+                    else
+                    {
+                        builder.append(c);
+                    }
+                }
+                builder.append('"');
+                retVal = builder.toString();
+            }
+            return retVal;
+        }
+    }
+}